@@ -0,0 +1,391 @@
+package fi.liikennevirasto.winvis.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.UnknownHttpStatusCodeException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Common HTTP client for integrations. All integrations share one JDK HttpClient, which keeps
+ * connections alive and pools them per host, and uses HTTP/2 when HTTPS server negotiates it.
+ * Plain HTTP requests are sent as HTTP/1.1, without attempting an upgrade to HTTP/2.
+ * Connection pool itself is tuned with JDK system properties jdk.httpclient.connectionPoolSize
+ * and jdk.httpclient.keepalive.timeout.
+ * <p>
+ * Every request has three deadlines: connect timeout for opening connection, read timeout for
+ * receiving response headers, and total timeout for the whole exchange including response body.
+ * Each of them aborts the exchange itself, not only the wait for it: read timeout is the timeout of
+ * the request, and response body is closed when total timeout passes.
+ * Responses are requested gzip compressed, and request bodies can be gzip compressed too.
+ * <p>
+ * Errors are reported with the same Spring web client exceptions as RestTemplate uses: HTTP error
+ * statuses as HttpClientErrorException and HttpServerErrorException, and I/O errors and timeouts
+ * as ResourceAccessException.
+ */
+@Component
+public class SharedHttpClient {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedHttpClient.class);
+
+    private static final String GZIP = "gzip";
+
+    /**
+     * Closes response bodies that are still being read when their total timeout passes
+     */
+    private static final ScheduledExecutorService bodyTimeouts = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "shared-http-client-timeouts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final HttpClient httpClient;
+    private final Duration readTimeout;
+    private final Duration totalTimeout;
+    private final Map<String, HostMetrics> hostMetrics = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SharedHttpClient(@Value("${request.timeoutSeconds.connect:10}") int connectTimeoutSeconds,
+                            @Value("${request.timeoutSeconds.read:${request.timeoutSeconds.default:60}}") int readTimeoutSeconds,
+                            @Value("${request.timeoutSeconds.total:${request.timeoutSeconds.default:60}}") int totalTimeoutSeconds) {
+        this.readTimeout = Duration.ofSeconds(readTimeoutSeconds);
+        this.totalTimeout = Duration.ofSeconds(Math.max(totalTimeoutSeconds, readTimeoutSeconds));
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        LOG.info("Init: HTTP client with connect timeout {}s, read timeout {}s and total timeout {}s",
+                connectTimeoutSeconds, readTimeoutSeconds, this.totalTimeout.getSeconds());
+    }
+
+    /**
+     * GET given url
+     *
+     * @param uri
+     * @param headers request headers
+     * @return response body, decompressed if needed
+     */
+    public byte[] get(URI uri, Map<String, String> headers) {
+        var request = newRequest(uri, headers).GET();
+        return send(uri, request, 0).getBody();
+    }
+
+    /**
+     * GET given url as a stream, for responses too large to be held in memory. Read timeout applies to
+     * receiving response headers, but total timeout does not apply, since body is read by the caller.
+     * Bytes of streamed response bodies are not counted in metrics.
+     *
+     * @param uri
+     * @param headers request headers
+     * @return response body, decompressed if needed, to be closed by the caller
+     */
+    public InputStream getStream(URI uri, Map<String, String> headers) {
+        var metrics = hostMetrics.computeIfAbsent(uri.getHost(), HostMetrics::new);
+        metrics.requestStarted(0);
+        var beginTime = System.nanoTime();
+        var succeeded = false;
+        var future = httpClient.sendAsync(newRequest(uri, headers).GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+        try {
+            var response = future.get(readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            var gzipped = GZIP.equalsIgnoreCase(response.headers().firstValue("Content-Encoding").orElse(""));
+            InputStream body;
+            try {
+                body = gzipped ? new GZIPInputStream(response.body()) : response.body();
+            } catch (IOException e) {
+                response.body().close();
+                throw e;
+            }
+            if (response.statusCode() >= 400) {
+                try (body) {
+                    throwOnErrorStatus(response.statusCode(), body.readAllBytes());
+                }
+            }
+            succeeded = true;
+            return body;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new ResourceAccessException("Request to " + uri + " did not respond in " + readTimeout.getSeconds() + "s");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Interrupted while requesting " + uri);
+        } catch (IOException e) {
+            throw new ResourceAccessException("I/O error on request to " + uri + ": " + e, e);
+        } catch (ExecutionException e) {
+            var cause = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            throw new ResourceAccessException("I/O error on request to " + uri + ": " + cause, cause);
+        } finally {
+            metrics.requestFinished(succeeded, System.nanoTime() - beginTime);
+        }
+    }
+
+    /**
+     * POST given body to given url
+     *
+     * @param uri
+     * @param headers request headers
+     * @param body request body
+     * @param gzipBody whether body is sent gzip compressed
+     * @return response body, decompressed if needed
+     */
+    public byte[] post(URI uri, Map<String, String> headers, byte[] body, boolean gzipBody) {
+        return exchangePost(uri, headers, body, gzipBody).getBody();
+    }
+
+    /**
+     * POST given body to given url, with status and byte counts of the exchange for callers that report them
+     *
+     * @param uri
+     * @param headers request headers
+     * @param body request body
+     * @param gzipBody whether body is sent gzip compressed
+     * @return successful response
+     */
+    public Response exchangePost(URI uri, Map<String, String> headers, byte[] body, boolean gzipBody) {
+        var requestBody = gzipBody ? gzip(body) : body;
+        var request = newRequest(uri, headers)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody));
+        if (gzipBody) {
+            request.header("Content-Encoding", GZIP);
+        }
+        return send(uri, request, requestBody.length);
+    }
+
+    /**
+     * Request metrics for each host contacted so far, by host name
+     */
+    public Map<String, HostMetrics> getHostMetrics() {
+        return Map.copyOf(hostMetrics);
+    }
+
+    private HttpRequest.Builder newRequest(URI uri, Map<String, String> headers) {
+        var request = HttpRequest.newBuilder(uri)
+                .timeout(readTimeout)
+                .header("Accept-Encoding", GZIP);
+        if ("http".equalsIgnoreCase(uri.getScheme())) {
+            request.version(HttpClient.Version.HTTP_1_1);
+        }
+        headers.forEach(request::header);
+        return request;
+    }
+
+    private Response send(URI uri, HttpRequest.Builder request, long bytesSent) {
+        var metrics = hostMetrics.computeIfAbsent(uri.getHost(), HostMetrics::new);
+        metrics.requestStarted(bytesSent);
+        var beginTime = System.nanoTime();
+        var succeeded = false;
+        var future = httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        try {
+            var response = future.get(totalTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            var received = readBody(uri, response.body(), beginTime + totalTimeout.toNanos());
+            var body = decompress(uri, response.headers().firstValue("Content-Encoding").orElse(""), received);
+            metrics.bytesReceived(received.length);
+            throwOnErrorStatus(response.statusCode(), body);
+            succeeded = true;
+            return new Response(response.statusCode(), body, bytesSent, received.length);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new ResourceAccessException("Request to " + uri + " did not complete in " + totalTimeout.getSeconds() + "s");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Interrupted while requesting " + uri);
+        } catch (IOException e) {
+            throw new ResourceAccessException("I/O error on request to " + uri + ": " + e, e);
+        } catch (ExecutionException e) {
+            var cause = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            throw new ResourceAccessException("I/O error on request to " + uri + ": " + cause, cause);
+        } finally {
+            metrics.requestFinished(succeeded, System.nanoTime() - beginTime);
+        }
+    }
+
+    /**
+     * Read whole response body, closing it if it is not read by given deadline. Closing the body aborts the
+     * exchange, whereas cancelling the response future would leave it running.
+     */
+    private byte[] readBody(URI uri, InputStream body, long deadlineNanos) throws IOException {
+        var timedOut = new AtomicBoolean();
+        var timeout = bodyTimeouts.schedule(() -> {
+            timedOut.set(true);
+            try {
+                body.close();
+            } catch (IOException e) {
+                LOG.debug("Could not close timed out response body of {}", uri, e);
+            }
+        }, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        try (body) {
+            return body.readAllBytes();
+        } catch (IOException e) {
+            if (timedOut.get()) {
+                throw new ResourceAccessException("Request to " + uri + " did not complete in " + totalTimeout.getSeconds() + "s");
+            }
+            throw e;
+        } finally {
+            timeout.cancel(false);
+        }
+    }
+
+    private static void throwOnErrorStatus(int statusCode, byte[] body) {
+        if (statusCode < 400) {
+            return;
+        }
+        var status = HttpStatus.resolve(statusCode);
+        if (status == null) {
+            throw new UnknownHttpStatusCodeException(statusCode, "", null, body, StandardCharsets.UTF_8);
+        }
+        if (status.is4xxClientError()) {
+            throw new HttpClientErrorException(status, status.getReasonPhrase(), body, StandardCharsets.UTF_8);
+        }
+        throw new HttpServerErrorException(status, status.getReasonPhrase(), body, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] decompress(URI uri, String contentEncoding, byte[] body) {
+        if (!GZIP.equalsIgnoreCase(contentEncoding)) {
+            return body;
+        }
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new ResourceAccessException("Could not decompress response from " + uri + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new GZIPOutputStream(bytes)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Successful response: status, decompressed body, and bytes sent and received on the wire
+     */
+    public static class Response {
+        private final int statusCode;
+        private final byte[] body;
+        private final long bytesSent;
+        private final long bytesReceived;
+
+        Response(int statusCode, byte[] body, long bytesSent, long bytesReceived) {
+            this.statusCode = statusCode;
+            this.body = body;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+    }
+
+    /**
+     * Request counters for single host
+     */
+    public static class HostMetrics {
+        private final String host;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong inFlight = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private final AtomicLong totalTimeNanos = new AtomicLong();
+
+        HostMetrics(String host) {
+            this.host = host;
+        }
+
+        void requestStarted(long sent) {
+            requests.incrementAndGet();
+            inFlight.incrementAndGet();
+            bytesSent.addAndGet(sent);
+        }
+
+        void bytesReceived(long received) {
+            bytesReceived.addAndGet(received);
+        }
+
+        void requestFinished(boolean succeeded, long elapsedNanos) {
+            inFlight.decrementAndGet();
+            totalTimeNanos.addAndGet(elapsedNanos);
+            if (!succeeded) {
+                failures.incrementAndGet();
+            }
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getFailures() {
+            return failures.get();
+        }
+
+        /**
+         * Requests currently waiting for response, ie. connections in use for this host
+         */
+        public long getInFlight() {
+            return inFlight.get();
+        }
+
+        public long getBytesSent() {
+            return bytesSent.get();
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.get();
+        }
+
+        public double getAverageTimeMillis() {
+            var count = requests.get() - inFlight.get();
+            return count <= 0 ? 0.0 : totalTimeNanos.get() / 1000000.0 / count;
+        }
+    }
+}
@@ -3,26 +3,48 @@ package fi.liikennevirasto.winvis.common;
 import fi.liikennevirasto.commons.SecureishXml;
 import fi.liikennevirasto.routelib.HandlerUtils;
 import fi.liikennevirasto.routelib.RTZHandlingException;
+import org.apache.commons.io.input.BOMInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 
 
 /**
  * Transforms XML in standard manner, without String 'hacking'
+ * <p>
+ * Transformer factory is built only once, and each thread reuses its own identity Transformer
+ * created from it, so factory and transformer construction is not paid on every call. Besides
+ * String to String, streams and any Source/Result pairs are supported, so large documents do not
+ * need to be held in memory as Strings. Identity transformer copies the document as it is parsed,
+ * whereas a compiled stylesheet would build a tree of the whole document first.
  */
 @Component
 public class XmlTransformer {
 
     private static final Logger LOG = LoggerFactory.getLogger(XmlTransformer.class);
 
+    private final TransformerFactory factory;
+    private final ThreadLocal<Transformer> transformers;
+
+    public XmlTransformer() {
+        this.factory = SecureishXml.buildTransformerFactory();
+        this.transformers = ThreadLocal.withInitial(this::newTransformer);
+    }
+
     /**
      * Receives XML as String object and transforms it to new XML String without XML declaration
      */
@@ -32,16 +54,47 @@ public class XmlTransformer {
         StringReader str = new StringReader(xml);
         StringWriter stw = new StringWriter();
 
+        xmlWithoutXmlDeclaration(new StreamSource(str), new StreamResult(stw));
+
+        return stw.toString();
+    }
+
+    /**
+     * Reads XML from input stream and writes it to output stream without XML declaration.
+     * Possible UTF-8 byte order mark is skipped. Neither of the streams is closed.
+     */
+    public void xmlWithoutXmlDeclaration(InputStream xml, OutputStream output) {
+        xmlWithoutXmlDeclaration(new StreamSource(new BOMInputStream(xml)), new StreamResult(output));
+    }
+
+    /**
+     * Transforms XML from given source to given result without XML declaration
+     */
+    public void xmlWithoutXmlDeclaration(Source source, Result result) {
+        Transformer serializer = transformers.get();
         try {
-            Transformer serializer = SecureishXml.buildTransformerFactory().newTransformer();
-            serializer.setOutputProperty("omit-xml-declaration", "yes");
-            serializer.transform(new StreamSource(str), new StreamResult(stw));
+            // Set on every call, since reset clears output properties
+            serializer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            serializer.transform(source, result);
         } catch (TransformerException e) {
             String errMsg = "Transformation of RTZ document failed " + e.getMessage();
             LOG.error(errMsg, e);
             throw new RTZHandlingException(errMsg);
+        } finally {
+            serializer.reset();
         }
+    }
 
-        return stw.toString();
+    /**
+     * TransformerFactory is not thread safe, so transformers of different threads are created one at a time
+     */
+    private Transformer newTransformer() {
+        try {
+            synchronized (factory) {
+                return factory.newTransformer();
+            }
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalStateException("Could not create XML transformer", e);
+        }
     }
 }
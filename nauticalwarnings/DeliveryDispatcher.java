@@ -0,0 +1,361 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.transaction.Transactional;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Delivers warnings to every enabled DeliverySink. Each sink has its own bounded queue and worker thread,
+ * so a slow or failing sink only holds up its own queue. Queuing never blocks: when a queue is full, the
+ * delivery is left pending in database and queued later by the retry sweep.
+ * <p>
+ * Delivery of each warning to each sink is tracked as WarningDeliveryEntity. Deliveries are recorded in the
+ * same transaction as the warnings themselves, and queued only after that transaction commits, so sinks never
+ * see a warning that was rolled back. Failed deliveries are retried with growing delay, up to an hour.
+ * Delivery of an active warning that expires before it is delivered is superseded by delivery of its expiry.
+ * <p>
+ * Sink workers and the retry sweep only run on nodes that poll, like warnings are only changed there,
+ * so that deliveries recorded in the shared database are not sent by several nodes.
+ */
+@Service
+public class DeliveryDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryDispatcher.class);
+
+    private static final int DEFAULT_INITIAL_DELAY = 10000;
+    private static final Duration FIRST_RETRY_DELAY = Duration.ofMinutes(1);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofHours(1);
+    private static final int MAX_ERROR_LENGTH = 4000;
+
+    private final List<DeliverySink> sinks;
+    private final WarningDeliveryRepository deliveryRepository;
+    private final NauticalWarningsRepository warningRepository;
+    private final WarningDeliveryAttemptRepository attemptRepository;
+    private final LatencyHistograms latencyHistograms;
+    private final Map<String, SinkQueue> queues = new LinkedHashMap<>();
+
+    @Value("${nautical-warnings.poller.enabled:false}")
+    private boolean pollerEnabled;
+
+    @Autowired
+    public DeliveryDispatcher(List<DeliverySink> sinks, WarningDeliveryRepository deliveryRepository, NauticalWarningsRepository warningRepository,
+                              WarningDeliveryAttemptRepository attemptRepository, LatencyHistograms latencyHistograms) {
+        this.sinks = sinks;
+        this.deliveryRepository = deliveryRepository;
+        this.warningRepository = warningRepository;
+        this.attemptRepository = attemptRepository;
+        this.latencyHistograms = latencyHistograms;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!pollerEnabled) {
+            logger.info("Init: Nautical warnings are not polled on this node, so they are not delivered from it either");
+            return;
+        }
+        for (var sink : sinks) {
+            if (!sink.isEnabled()) {
+                logger.info("Init: Nautical warning delivery sink {} is toggled off", sink.getName());
+                continue;
+            }
+            var queue = new SinkQueue(sink);
+            queues.put(sink.getName(), queue);
+            queue.worker.start();
+            logger.info("Init: Delivering nautical warnings to sink {} with queue capacity {}", sink.getName(), sink.getQueueCapacity());
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        queues.values().forEach(queue -> queue.worker.interrupt());
+    }
+
+    /**
+     * Record pending delivery of given warnings to every enabled sink, and queue them once the current
+     * transaction commits. Returns immediately, actual delivery happens in sink workers.
+     * <p>
+     * A warning that is active again after it expired already has delivery rows of earlier time it was
+     * active or expired. Those rows are reset to pending, since there is one row per warning, sink and status.
+     *
+     * @param warnings
+     * @param warningStatus whether warnings are delivered as active or expired
+     */
+    public void enqueue(List<NauticalWarningEntity> warnings, WarningStatus warningStatus) {
+        if (warnings.isEmpty() || queues.isEmpty()) {
+            return;
+        }
+        var nextAttemptTime = LocalDateTime.now().plus(FIRST_RETRY_DELAY);
+        var queued = new ArrayList<Runnable>();
+        var warningIds = warnings.stream().map(NauticalWarningEntity::getId).collect(toList());
+        for (var queue : queues.values()) {
+            if (warningStatus == WarningStatus.EXPIRED) {
+                deliveryRepository.supersedeActiveDeliveries(queue.sink.getName(), warningIds);
+            }
+            var existing = deliveryRepository.findAllBySinkAndWarningStatusAndWarningIdIn(queue.sink.getName(), warningStatus, warningIds).stream()
+                    .collect(toMap(WarningDeliveryEntity::getWarningId, Function.identity()));
+            var deliveries = deliveryRepository.saveAll(warnings.stream()
+                    .map(w -> {
+                        var delivery = existing.get(w.getId());
+                        if (delivery == null) {
+                            return new WarningDeliveryEntity(w.getId(), queue.sink.getName(), warningStatus, nextAttemptTime);
+                        }
+                        delivery.setStatus(WarningDeliveryStatus.PENDING);
+                        delivery.setAttempts(0);
+                        delivery.setLastError(null);
+                        delivery.setDeliveredTime(null);
+                        delivery.setNextAttemptTime(nextAttemptTime);
+                        return delivery;
+                    })
+                    .collect(toList()));
+            for (int i = 0; i < warnings.size(); i++) {
+                var item = new QueuedDelivery(deliveries.get(i).getId(), warnings.get(i));
+                queued.add(() -> queue.offer(item));
+            }
+        }
+        logger.info("Queuing {} {} warnings for delivery to {} sinks.", warnings.size(), warningStatus, queues.size());
+        afterCommit(() -> queued.forEach(Runnable::run));
+    }
+
+    /**
+     * Queue again deliveries that failed, or did not fit in queue, once their retry time has come. Delivery of
+     * an active warning that has expired since is superseded instead, since its expiry is delivered separately.
+     */
+    @Scheduled(initialDelay = DEFAULT_INITIAL_DELAY, fixedDelayString = "${nautical-warnings.delivery.retry-frequency:60000}")
+    public void retryPendingDeliveries() {
+        var now = LocalDateTime.now();
+        for (var queue : queues.values()) {
+            try {
+                var deliveries = deliveryRepository.findAllBySinkAndStatusInAndNextAttemptTimeBefore(queue.sink.getName(),
+                        EnumSet.of(WarningDeliveryStatus.PENDING, WarningDeliveryStatus.FAILED), now).stream()
+                        .filter(d -> !queue.queuedIds.contains(d.getId()))
+                        .collect(toList());
+                if (deliveries.isEmpty()) {
+                    continue;
+                }
+                var warnings = warningRepository.findAllById(deliveries.stream().map(WarningDeliveryEntity::getWarningId).collect(toList())).stream()
+                        .collect(toMap(NauticalWarningEntity::getId, Function.identity()));
+                logger.info("Retrying {} nautical warning deliveries to sink {}.", deliveries.size(), queue.sink.getName());
+                for (var delivery : deliveries) {
+                    var warning = warnings.get(delivery.getWarningId());
+                    if (warning == null) {
+                        // Warning has been cleaned up already, nothing left to deliver
+                        deliveryRepository.delete(delivery);
+                    } else if (delivery.getWarningStatus() == WarningStatus.ACTIVE && warning.getExpiredTime() != null) {
+                        delivery.setStatus(WarningDeliveryStatus.SUPERSEDED);
+                        delivery.setNextAttemptTime(null);
+                        deliveryRepository.save(delivery);
+                    } else {
+                        queue.offer(new QueuedDelivery(delivery.getId(), warning));
+                    }
+                }
+            } catch (RuntimeException e) {
+                logger.error("Could not retry nautical warning deliveries to sink {}", queue.sink.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Delivery status of given warning to every sink
+     *
+     * @param warningId
+     * @return
+     */
+    public List<WarningDeliveryEntity> getDeliveries(long warningId) {
+        return deliveryRepository.findAllByWarningIdOrderByIdAsc(warningId);
+    }
+
+    /**
+     * Number of warnings currently waiting in queue of each sink, by sink name
+     */
+    public Map<String, Integer> getQueueSizes() {
+        var sizes = new LinkedHashMap<String, Integer>();
+        queues.forEach((name, queue) -> sizes.put(name, queue.queue.size()));
+        return sizes;
+    }
+
+    /**
+     * Every delivery attempt of given warning, oldest first
+     *
+     * @param warningId
+     * @return
+     */
+    public List<WarningDeliveryAttemptEntity> getDeliveryAttempts(long warningId) {
+        return attemptRepository.findAllByWarningIdOrderByStartTimeAsc(warningId);
+    }
+
+    /**
+     * Clean up delivery statuses and attempts recorded before given time. Deliveries still pending by then are given up.
+     *
+     * @param time
+     */
+    @Transactional
+    public void deleteDeliveriesCreatedBefore(LocalDateTime time) {
+        deliveryRepository.deleteByCreatedTimeBefore(time);
+        attemptRepository.deleteByStartTimeBefore(ZonedDateTime.of(time, ZoneId.systemDefault())
+                .withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void deliverBatch(DeliverySink sink, List<QueuedDelivery> batch) {
+        var attemptTime = LocalDateTime.now();
+        var startTimeUtc = nowUtc();
+        String error = null;
+        try {
+            sink.deliver(batch.stream().map(item -> item.warning).collect(toList()));
+        } catch (RuntimeException e) {
+            logger.error("Delivery of {} nautical warnings to sink {} failed", batch.size(), sink.getName(), e);
+            error = e.toString();
+            if (error.length() > MAX_ERROR_LENGTH) {
+                error = error.substring(0, MAX_ERROR_LENGTH);
+            }
+        }
+        var endTimeUtc = nowUtc();
+
+        var deliveries = deliveryRepository.findAllById(batch.stream().map(item -> item.deliveryId).collect(toList()));
+        var attempts = new ArrayList<WarningDeliveryAttemptEntity>();
+        for (var delivery : deliveries) {
+            delivery.setAttempts(delivery.getAttempts() + 1);
+            delivery.setLastAttemptTime(attemptTime);
+            if (delivery.getStatus() == WarningDeliveryStatus.SUPERSEDED) {
+                // Expired while this attempt was in progress, so it is not retried even if it failed
+                delivery.setLastError(error);
+            } else if (error == null) {
+                delivery.setStatus(WarningDeliveryStatus.DELIVERED);
+                delivery.setDeliveredTime(endTimeUtc);
+                delivery.setNextAttemptTime(null);
+                delivery.setLastError(null);
+            } else {
+                delivery.setStatus(WarningDeliveryStatus.FAILED);
+                delivery.setNextAttemptTime(attemptTime.plus(retryDelay(delivery.getAttempts())));
+                delivery.setLastError(error);
+            }
+            attempts.add(new WarningDeliveryAttemptEntity(delivery, startTimeUtc, endTimeUtc, error));
+        }
+        deliveryRepository.saveAll(deliveries);
+        attemptRepository.saveAll(attempts);
+
+        if (error == null) {
+            batch.forEach(item -> recordLatencies(sink, item.warning, startTimeUtc, endTimeUtc));
+        }
+    }
+
+    /**
+     * Record latencies of successful delivery. Propagation latencies are only recorded for active warnings,
+     * since expiry of a warning is not published in its source.
+     */
+    private void recordLatencies(DeliverySink sink, NauticalWarningEntity warning, LocalDateTime startTimeUtc, LocalDateTime endTimeUtc) {
+        latencyHistograms.record("delivery:" + sink.getName(), Duration.between(startTimeUtc, endTimeUtc));
+        if (warning.getExpiredTime() != null) {
+            return;
+        }
+        if (warning.getPersistedTime() != null) {
+            latencyHistograms.record("queue:" + sink.getName(), Duration.between(warning.getPersistedTime(), startTimeUtc));
+        }
+        if (warning.getPublishedTime() != null) {
+            latencyHistograms.record("end-to-end:" + sink.getName(), Duration.between(warning.getPublishedTime(), endTimeUtc));
+        }
+    }
+
+    private static LocalDateTime nowUtc() {
+        return ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+    }
+
+    private static Duration retryDelay(int attempts) {
+        var delay = FIRST_RETRY_DELAY.multipliedBy(1L << Math.min(attempts - 1, 10));
+        return delay.compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : delay;
+    }
+
+    private static final class QueuedDelivery {
+        private final long deliveryId;
+        private final NauticalWarningEntity warning;
+
+        private QueuedDelivery(long deliveryId, NauticalWarningEntity warning) {
+            this.deliveryId = deliveryId;
+            this.warning = warning;
+        }
+    }
+
+    /**
+     * Queue and worker thread of single sink. Ids of queued deliveries are tracked,
+     * so the retry sweep does not queue the same delivery twice.
+     */
+    private final class SinkQueue {
+        private final DeliverySink sink;
+        private final BlockingQueue<QueuedDelivery> queue;
+        private final Set<Long> queuedIds = ConcurrentHashMap.newKeySet();
+        private final Thread worker;
+
+        private SinkQueue(DeliverySink sink) {
+            this.sink = sink;
+            this.queue = new ArrayBlockingQueue<>(sink.getQueueCapacity());
+            this.worker = new Thread(this::work, "nautical-warnings-delivery-" + sink.getName());
+            this.worker.setDaemon(true);
+        }
+
+        private void offer(QueuedDelivery item) {
+            if (!queuedIds.add(item.deliveryId)) {
+                return;
+            }
+            if (!queue.offer(item)) {
+                queuedIds.remove(item.deliveryId);
+                logger.warn("Delivery queue of sink {} is full, warning {} is left pending.", sink.getName(), item.warning.getId());
+            }
+        }
+
+        private void work() {
+            while (!Thread.currentThread().isInterrupted()) {
+                var batch = new ArrayList<QueuedDelivery>();
+                try {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, sink.getBatchSize() - 1);
+                    deliverBatch(sink, batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    logger.error("Could not record delivery status of {} nautical warnings to sink {}", batch.size(), sink.getName(), e);
+                } finally {
+                    batch.forEach(item -> queuedIds.remove(item.deliveryId));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of delivering a single S124 document to a delivery sink over HTTP
+ */
+@Name(DeliveryEvent.NAME)
+@Label("Nautical Warning Delivery")
+@Category({"Winvis", "Nautical Warnings"})
+@Description("Delivery of an S124 document to a delivery sink")
+@StackTrace(false)
+class DeliveryEvent extends Event {
+
+    static final String NAME = "fi.liikennevirasto.winvis.nauticalwarnings.Delivery";
+
+    @Label("Sink")
+    String sink;
+
+    @Label("Warning Id")
+    long warningId;
+
+    @Label("Status")
+    @Description("Status of the warning delivered, ACTIVE or EXPIRED")
+    String status;
+
+    @Label("HTTP Status")
+    @Description("Response status, or 0 if no response was received")
+    int httpStatus;
+
+    @Label("Document Length")
+    @DataAmount
+    long documentLength;
+
+    @Label("Bytes Sent")
+    @Description("Request body as sent, after optional compression")
+    @DataAmount
+    long bytesSent;
+
+    @Label("Bytes Received")
+    @DataAmount
+    long bytesReceived;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    DeliveryEvent(String sink, long warningId, WarningStatus status) {
+        this.sink = sink;
+        this.warningId = warningId;
+        this.status = status.name();
+    }
+}
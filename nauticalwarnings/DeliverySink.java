@@ -0,0 +1,45 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import java.util.List;
+
+/**
+ * Destination that S124 nautical warnings are delivered to, for example SMA. DeliveryDispatcher gives every
+ * enabled sink its own bounded queue and worker thread, and tracks delivery of each warning to each sink
+ * separately, so a slow or failing sink does not delay delivery to the others.
+ */
+public interface DeliverySink {
+
+    /**
+     * Unique name of this sink, stored with delivery status of each warning
+     */
+    String getName();
+
+    /**
+     * Disabled sinks get no queue or worker, and no deliveries are recorded for them
+     */
+    boolean isEnabled();
+
+    /**
+     * How many warnings can wait in the queue of this sink. Warnings that do not fit
+     * are left pending, and queued again by the retry sweep.
+     */
+    default int getQueueCapacity() {
+        return 1000;
+    }
+
+    /**
+     * How many queued warnings are given to this sink at once
+     */
+    default int getBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Deliver given warnings. Each warning is delivered either when active or when expired,
+     * as told by its expired time. Any exception thrown fails delivery of the whole batch,
+     * and it is retried later.
+     *
+     * @param warnings
+     */
+    void deliver(List<NauticalWarningEntity> warnings);
+}
@@ -0,0 +1,53 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Primary source of nautical warnings: Digitraffic nautical warnings API. Its warnings keep their
+ * original Digitraffic ids.
+ */
+@Component
+public class DigitrafficWarningSource implements WarningSource {
+
+    public static final String NAME = "digitraffic";
+
+    private final DigitrafficClient digitrafficClient;
+
+    @Value("${nautical-warnings.poller.frequency}")
+    private long pollingFrequency;
+
+    @Autowired
+    public DigitrafficWarningSource(DigitrafficClient digitrafficClient) {
+        this.digitrafficClient = digitrafficClient;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getNamespace() {
+        return 0;
+    }
+
+    @Override
+    public Duration getPollInterval() {
+        return Duration.ofMillis(pollingFrequency);
+    }
+
+    @Override
+    public List<JsonNode> fetchWarnings() {
+        return StreamSupport.stream(digitrafficClient.fetchWarnings().spliterator(), false)
+                .collect(toList());
+    }
+}
@@ -0,0 +1,103 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+/**
+ * Delivery sink that emails a digest of new and expired warnings to configured recipients.
+ * Warnings queued at the same time, usually those of a single poll, are sent as one message.
+ * Requires Spring mail configuration (spring.mail.*) when enabled.
+ */
+@Component
+public class EmailDigestDeliverySink implements DeliverySink {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailDigestDeliverySink.class);
+
+    @Value("${nautical-warnings.delivery.email.enabled:false}")
+    private boolean enabled;
+    @Value("${nautical-warnings.delivery.email.from:}")
+    private String from;
+    @Value("${nautical-warnings.delivery.email.to:}")
+    private String[] to;
+    @Value("${nautical-warnings.delivery.email.digest-size:50}")
+    private int digestSize;
+
+    private final ObjectProvider<JavaMailSender> mailSenderProvider;
+    private JavaMailSender mailSender;
+
+    @Autowired
+    public EmailDigestDeliverySink(ObjectProvider<JavaMailSender> mailSenderProvider) {
+        this.mailSenderProvider = mailSenderProvider;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        this.mailSender = mailSenderProvider.getIfAvailable();
+        if (mailSender == null || to.length == 0) {
+            throw new IllegalStateException("Email digest delivery is enabled, but mail sender or nautical-warnings.delivery.email.to is not configured");
+        }
+        logger.info("Init: Nautical warning digests are emailed to {} recipients", to.length);
+    }
+
+    @Override
+    public String getName() {
+        return "email";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public int getBatchSize() {
+        return digestSize;
+    }
+
+    @Override
+    public void deliver(List<NauticalWarningEntity> warnings) {
+        var newCount = warnings.stream().filter(w -> w.getExpiredTime() == null).count();
+        var message = new SimpleMailMessage();
+        message.setFrom(from);
+        message.setTo(to);
+        message.setSubject(String.format("Nautical warnings: %d new, %d expired", newCount, warnings.size() - newCount));
+        message.setText(buildDigest(warnings));
+        try {
+            mailSender.send(message);
+        } catch (MailException e) {
+            throw new IntegrationException("Could not email digest of " + warnings.size() + " warnings", e);
+        }
+    }
+
+    private static String buildDigest(List<NauticalWarningEntity> warnings) {
+        var text = new StringBuilder();
+        for (var warning : warnings) {
+            text.append(warning.getExpiredTime() == null ? "NEW " : "EXPIRED ").append(warning.getId());
+            var parameters = warning.getS124Parameters();
+            if (parameters != null) {
+                text.append(" (").append(parameters.getS124Id()).append(")\n")
+                        .append(parameters.getGeneralArea()).append(", ").append(parameters.getTypeOfWarning()).append('\n')
+                        .append(StringEscapeUtils.unescapeXml(parameters.getTitleText())).append('\n')
+                        .append(StringEscapeUtils.unescapeXml(parameters.getSubjectText())).append('\n');
+            } else {
+                text.append('\n');
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+}
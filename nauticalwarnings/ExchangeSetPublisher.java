@@ -0,0 +1,349 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.apache.commons.text.StringEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Publishes active warnings as an S124 exchange set of static files, for partners that fetch warnings as
+ * files instead of using the API. Layout of the publish directory is
+ * <pre>
+ *     current -&gt; versions/00000042
+ *     versions/00000042/S100_ROOT/CATALOG.XML
+ *     versions/00000042/S100_ROOT/S-124/DATASET_FILES/{warning id}.xml
+ *     deltas/00000041-00000042.zip
+ * </pre>
+ * Each publish that changes anything creates a new version. Unchanged files are hard linked from the previous
+ * version, so only new and changed documents are written. Version is built in a temporary directory, renamed
+ * in place once complete, and only then the current link is swapped with a rename, so readers never see
+ * a partial exchange set. Delta archive of a version contains its new and changed files and catalogue in the
+ * same paths, and REMOVED.TXT listing files removed since the previous version.
+ * <p>
+ * Catalogue is a simple listing of the dataset files with warning id, S124 id, size and SHA-256 of each, not the full
+ * S-100 exchange catalogue. Warnings that failed schema validation are left out, as they are not delivered either.
+ * <p>
+ * Exchange set is published after every poll that changed active warnings, and periodically in case warnings
+ * were changed some other way. Latest nautical-warnings.exchange-set.versions-kept versions and their deltas
+ * are kept, so that readers still copying an older version are not cut off.
+ */
+@Component
+public class ExchangeSetPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExchangeSetPublisher.class);
+
+    private static final String ROOT = "S100_ROOT";
+    private static final String CATALOGUE = ROOT + "/CATALOG.XML";
+    private static final String DATASET_FILES = ROOT + "/S-124/DATASET_FILES/";
+    private static final String REMOVED = "REMOVED.TXT";
+    private static final String CURRENT = "current";
+    private static final Pattern VERSION_NAME = Pattern.compile("\\d{8}");
+    private static final Pattern DELTA_NAME = Pattern.compile("\\d{8}-(\\d{8})\\.zip");
+    private static final DateTimeFormatter ISSUE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
+
+    private final NauticalWarningsRepository warningRepository;
+
+    @Value("${nautical-warnings.exchange-set.enabled:false}")
+    private boolean enabled;
+    @Value("${nautical-warnings.exchange-set.directory:}")
+    private String directory;
+    @Value("${nautical-warnings.exchange-set.versions-kept:10}")
+    private int versionsKept;
+
+    private Path publishDirectory;
+    private Path versionsDirectory;
+    private Path deltasDirectory;
+
+    /**
+     * Latest published version, and SHA-256 of each of its dataset files by path
+     */
+    private int version;
+    private Map<String, String> publishedFiles = new TreeMap<>();
+    private boolean hardLinksSupported = true;
+
+    @Autowired
+    public ExchangeSetPublisher(NauticalWarningsRepository warningRepository) {
+        this.warningRepository = warningRepository;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (directory.isBlank()) {
+            throw new IllegalStateException("Exchange set publishing is enabled, but nautical-warnings.exchange-set.directory is not set");
+        }
+        if (versionsKept < 1) {
+            throw new IllegalStateException("nautical-warnings.exchange-set.versions-kept must be at least 1");
+        }
+        publishDirectory = Files.createDirectories(Paths.get(directory));
+        versionsDirectory = Files.createDirectories(publishDirectory.resolve("versions"));
+        deltasDirectory = Files.createDirectories(publishDirectory.resolve("deltas"));
+        deleteTemporaryFiles();
+        readLatestVersion();
+        logger.info("Init: Publishing nautical warnings exchange set to {}, latest version {} with {} files",
+                publishDirectory.toAbsolutePath(), version, publishedFiles.size());
+    }
+
+    /**
+     * Publish new version of exchange set from active warnings in database whose validity has started, if they
+     * changed since latest version
+     */
+    @Scheduled(fixedDelayString = "${nautical-warnings.exchange-set.refresh-frequency:300000}")
+    public synchronized void publish() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            var warnings = new TreeMap<String, NauticalWarningEntity>();
+            warningRepository.findAllByExpiredTimeIsNullAndActivationTimeIsNull().stream()
+                    .filter(w -> w.getValidationError() == null)
+                    .forEach(w -> warnings.put(DATASET_FILES + w.getId() + ".xml", w));
+            var files = new TreeMap<String, byte[]>();
+            var digests = new TreeMap<String, String>();
+            warnings.forEach((path, warning) -> {
+                var content = warning.getS124Document().getBytes(StandardCharsets.UTF_8);
+                files.put(path, content);
+                digests.put(path, sha256(content));
+            });
+            if (version > 0 && digests.equals(publishedFiles)) {
+                return;
+            }
+            publishVersion(version + 1, warnings, files, digests);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not publish nautical warnings exchange set, keeping version {}", version, e);
+        }
+    }
+
+    private void publishVersion(int newVersion, Map<String, NauticalWarningEntity> warnings, Map<String, byte[]> files,
+                                Map<String, String> digests) throws IOException {
+        var previousDirectory = versionDirectory(version);
+        var changedFiles = new ArrayList<String>();
+        var removedFiles = publishedFiles.keySet().stream()
+                .filter(path -> !files.containsKey(path))
+                .collect(toList());
+
+        // Build the whole version under temporary name, linking files that did not change
+        var temporary = versionsDirectory.resolve("." + versionName(newVersion) + ".tmp");
+        deleteRecursively(temporary);
+        Files.createDirectories(temporary.resolve(DATASET_FILES));
+        for (var file : files.entrySet()) {
+            var target = temporary.resolve(file.getKey());
+            if (digests.get(file.getKey()).equals(publishedFiles.get(file.getKey()))) {
+                linkOrCopy(previousDirectory.resolve(file.getKey()), target);
+            } else {
+                Files.write(target, file.getValue());
+                changedFiles.add(file.getKey());
+            }
+        }
+        var catalogue = catalogue(newVersion, warnings, files, digests);
+        Files.write(temporary.resolve(CATALOGUE), catalogue);
+        Files.move(temporary, versionDirectory(newVersion), StandardCopyOption.ATOMIC_MOVE);
+        // Version is complete once renamed, so next publish continues from it even if the rest fails
+        var previousVersion = version;
+        version = newVersion;
+        publishedFiles = new TreeMap<>(digests);
+
+        if (previousVersion > 0) {
+            writeDelta(previousVersion, newVersion, files, changedFiles, removedFiles, catalogue);
+        }
+        swapCurrent(newVersion);
+        logger.info("Published nautical warnings exchange set version {}: {} files, {} new or changed, {} removed",
+                newVersion, files.size(), changedFiles.size(), removedFiles.size());
+        deleteOldVersions();
+    }
+
+    private void writeDelta(int previousVersion, int newVersion, Map<String, byte[]> files, List<String> changedFiles,
+                            List<String> removedFiles, byte[] catalogue) throws IOException {
+        var target = deltasDirectory.resolve(versionName(previousVersion) + "-" + versionName(newVersion) + ".zip");
+        var temporary = deltasDirectory.resolve("." + target.getFileName() + ".tmp");
+        try {
+            try (var zip = new ZipOutputStream(Files.newOutputStream(temporary))) {
+                for (var path : changedFiles) {
+                    zip.putNextEntry(new ZipEntry(path));
+                    zip.write(files.get(path));
+                    zip.closeEntry();
+                }
+                zip.putNextEntry(new ZipEntry(CATALOGUE));
+                zip.write(catalogue);
+                zip.closeEntry();
+                zip.putNextEntry(new ZipEntry(REMOVED));
+                for (var path : removedFiles) {
+                    zip.write((path + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+                zip.closeEntry();
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Point current link to given version. New link is created under temporary name and renamed over the old one,
+     * so current always points to a complete version.
+     */
+    private void swapCurrent(int newVersion) throws IOException {
+        var temporary = publishDirectory.resolve("." + CURRENT + ".tmp");
+        Files.deleteIfExists(temporary);
+        Files.createSymbolicLink(temporary, publishDirectory.relativize(versionDirectory(newVersion)));
+        Files.move(temporary, publishDirectory.resolve(CURRENT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] catalogue(int version, Map<String, NauticalWarningEntity> warnings, Map<String, byte[]> files,
+                                    Map<String, String> digests) {
+        var xml = new StringBuilder(256 + files.size() * 192);
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<ExchangeCatalogue version=\"").append(version)
+                .append("\" issueTime=\"").append(ISSUE_TIME_FORMATTER.format(LocalDateTime.now(ZoneOffset.UTC)))
+                .append("\" datasets=\"").append(files.size()).append("\">\n");
+        warnings.forEach((path, warning) -> {
+            xml.append("  <Dataset file=\"").append(StringEscapeUtils.escapeXml10(path.substring(ROOT.length() + 1)))
+                    .append("\" warningId=\"").append(warning.getId());
+            if (warning.getSource() != null) {
+                xml.append("\" source=\"").append(StringEscapeUtils.escapeXml10(warning.getSource()));
+            }
+            if (warning.getS124Parameters() != null) {
+                xml.append("\" s124Id=\"").append(StringEscapeUtils.escapeXml10(warning.getS124Parameters().getS124Id()));
+            }
+            xml.append("\" size=\"").append(files.get(path).length)
+                    .append("\" sha256=\"").append(digests.get(path))
+                    .append("\"/>\n");
+        });
+        xml.append("</ExchangeCatalogue>\n");
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void linkOrCopy(Path existing, Path target) throws IOException {
+        if (hardLinksSupported) {
+            try {
+                Files.createLink(target, existing);
+                return;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                logger.warn("Could not hard link exchange set files in {}, copying them instead: {}", publishDirectory, e.toString());
+                hardLinksSupported = false;
+            }
+        }
+        Files.copy(existing, target);
+    }
+
+    /**
+     * Find latest complete version, and checksums of its files, so that publishing continues from it after restart
+     */
+    private void readLatestVersion() throws IOException {
+        try (var versions = Files.list(versionsDirectory)) {
+            version = versions.map(p -> p.getFileName().toString())
+                    .filter(name -> VERSION_NAME.matcher(name).matches())
+                    .mapToInt(Integer::parseInt)
+                    .max()
+                    .orElse(0);
+        }
+        publishedFiles = new TreeMap<>();
+        if (version == 0) {
+            return;
+        }
+        var datasetFiles = versionDirectory(version).resolve(DATASET_FILES);
+        if (Files.isDirectory(datasetFiles)) {
+            try (var paths = Files.list(datasetFiles)) {
+                for (var path : paths.collect(toList())) {
+                    publishedFiles.put(DATASET_FILES + path.getFileName(), sha256(Files.readAllBytes(path)));
+                }
+            }
+        }
+        // Publishing may have stopped between renaming the version and swapping the link
+        swapCurrent(version);
+    }
+
+    private void deleteOldVersions() throws IOException {
+        var oldestKept = version - versionsKept + 1;
+        try (var versions = Files.list(versionsDirectory)) {
+            for (var path : versions.collect(toList())) {
+                var name = path.getFileName().toString();
+                if (VERSION_NAME.matcher(name).matches() && Integer.parseInt(name) < oldestKept) {
+                    deleteRecursively(path);
+                }
+            }
+        }
+        try (var deltas = Files.list(deltasDirectory)) {
+            for (var path : deltas.collect(toList())) {
+                var matcher = DELTA_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches() && Integer.parseInt(matcher.group(1)) < oldestKept) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private void deleteTemporaryFiles() throws IOException {
+        for (var parent : List.of(publishDirectory, versionsDirectory, deltasDirectory)) {
+            try (var paths = Files.list(parent)) {
+                for (var path : paths.collect(toList())) {
+                    if (path.getFileName().toString().endsWith(".tmp")) {
+                        deleteRecursively(path);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (var p : paths.sorted(Comparator.reverseOrder()).collect(toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private Path versionDirectory(int version) {
+        return versionsDirectory.resolve(versionName(version));
+    }
+
+    private static String versionName(int version) {
+        return String.format("%08d", version);
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(content);
+            var hex = new StringBuilder(digest.length * 2);
+            for (var b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of converting a single warning feature to S124, in a conversion pool thread.
+ * Vertex counts and document length tell which warnings are large, so allocation and GC spikes during
+ * the event can be attributed to them.
+ */
+@Name(FeatureConversionEvent.NAME)
+@Label("Nautical Warning Conversion")
+@Category({"Winvis", "Nautical Warnings"})
+@Description("Conversion of a nautical warning feature to S124")
+@StackTrace(false)
+class FeatureConversionEvent extends Event {
+
+    static final String NAME = "fi.liikennevirasto.winvis.nauticalwarnings.FeatureConversion";
+
+    @Label("Source")
+    String source;
+
+    @Label("Warning Id")
+    long warningId;
+
+    @Label("Geometry Type")
+    String geometryType;
+
+    @Label("Area Match Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long areaMatchDuration;
+
+    @Label("Render Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long renderDuration;
+
+    @Label("Original Vertex Count")
+    int originalVertexCount;
+
+    @Label("Vertex Count")
+    @Description("Vertices in the S124 document, after optional geometry reduction")
+    int vertexCount;
+
+    @Label("Document Length")
+    @DataAmount
+    long documentLength;
+
+    @Label("Error")
+    @Description("Exception class if conversion failed")
+    String error;
+
+    FeatureConversionEvent(String source, long warningId) {
+        this.source = source;
+        this.warningId = warningId;
+    }
+}
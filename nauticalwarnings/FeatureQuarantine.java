@@ -0,0 +1,194 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Quarantine of warning features that fail conversion. A quarantined feature is skipped in later polls
+ * without converting it again, for as long as its content stays the same. Once its content changes it is
+ * converted again, and released from quarantine if that succeeds. Features that disappear from their source
+ * are released too.
+ */
+@Service
+public class FeatureQuarantine {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeatureQuarantine.class);
+
+    private static final int MAX_ERROR_LENGTH = 4000;
+
+    private final QuarantinedFeatureRepository repository;
+
+    private final LongAdder quarantinedCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+    private final LongAdder releasedCount = new LongAdder();
+    private final LongAdder invalidCount = new LongAdder();
+
+    @Autowired
+    public FeatureQuarantine(QuarantinedFeatureRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * SHA-256 of feature json, Base64 encoded
+     *
+     * @param feature
+     * @return
+     */
+    public static String contentHash(JsonNode feature) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(feature.toString().getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Quarantined features of given source, by warning id
+     *
+     * @param source
+     * @return
+     */
+    public Map<Long, QuarantinedFeatureEntity> findBySource(WarningSource source) {
+        return repository.findAllBySource(source.getName()).stream()
+                .collect(toMap(QuarantinedFeatureEntity::getId, Function.identity()));
+    }
+
+    /**
+     * Whether given feature should be skipped, because it is quarantined with the same content
+     *
+     * @param quarantined quarantine entry with the same warning id, or null
+     * @param feature
+     * @return
+     */
+    public boolean shouldSkip(QuarantinedFeatureEntity quarantined, JsonNode feature) {
+        if (quarantined == null || !quarantined.getContentHash().equals(contentHash(feature))) {
+            return false;
+        }
+        skippedCount.increment();
+        return true;
+    }
+
+    /**
+     * Quarantine feature that failed conversion, or update existing quarantine entry of it
+     *
+     * @param source
+     * @param warningId
+     * @param feature
+     * @param error
+     * @param existing  existing quarantine entry with the same warning id, or null
+     */
+    public void quarantine(WarningSource source, long warningId, JsonNode feature, RuntimeException error, QuarantinedFeatureEntity existing) {
+        var now = LocalDateTime.now();
+        var quarantined = existing != null ? existing : new QuarantinedFeatureEntity(warningId, source.getName());
+        var errorText = String.valueOf(error);
+        quarantined.setContentHash(contentHash(feature));
+        quarantined.setJsonDocument(feature.toString());
+        quarantined.setError(errorText.length() > MAX_ERROR_LENGTH ? errorText.substring(0, MAX_ERROR_LENGTH) : errorText);
+        quarantined.setFailureCount(quarantined.getFailureCount() + 1);
+        if (quarantined.getFirstFailedTime() == null) {
+            quarantined.setFirstFailedTime(now);
+        }
+        quarantined.setLastFailedTime(now);
+        repository.save(quarantined);
+        quarantinedCount.increment();
+        logger.warn("Quarantined warning {} of source {} until its content changes", warningId, source.getName());
+    }
+
+    /**
+     * Release given features from quarantine
+     *
+     * @param released
+     */
+    public void release(Collection<QuarantinedFeatureEntity> released) {
+        if (released.isEmpty()) {
+            return;
+        }
+        repository.deleteAll(released);
+        releasedCount.add(released.size());
+        logger.info("Released {} warnings from quarantine", released.size());
+    }
+
+    /**
+     * Count feature that was dropped, because it did not even have a valid id
+     */
+    public void invalidFeature() {
+        invalidCount.increment();
+    }
+
+    public List<QuarantinedFeatureEntity> getQuarantinedFeatures() {
+        return repository.findAllByOrderByLastFailedTimeDesc();
+    }
+
+    public Counts getCounts() {
+        var bySource = new TreeMap<String, Long>();
+        repository.countBySource().forEach(row -> bySource.put(String.valueOf(row[0]), ((Number) row[1]).longValue()));
+        return new Counts(bySource, quarantinedCount.sum(), skippedCount.sum(), releasedCount.sum(), invalidCount.sum());
+    }
+
+    /**
+     * Currently quarantined features by source, and quarantine events since startup
+     */
+    public static final class Counts {
+        private final Map<String, Long> quarantinedBySource;
+        private final long quarantinedSinceStartup;
+        private final long skippedSinceStartup;
+        private final long releasedSinceStartup;
+        private final long invalidSinceStartup;
+
+        private Counts(Map<String, Long> quarantinedBySource, long quarantinedSinceStartup, long skippedSinceStartup,
+                       long releasedSinceStartup, long invalidSinceStartup) {
+            this.quarantinedBySource = quarantinedBySource;
+            this.quarantinedSinceStartup = quarantinedSinceStartup;
+            this.skippedSinceStartup = skippedSinceStartup;
+            this.releasedSinceStartup = releasedSinceStartup;
+            this.invalidSinceStartup = invalidSinceStartup;
+        }
+
+        public Map<String, Long> getQuarantinedBySource() {
+            return quarantinedBySource;
+        }
+
+        /**
+         * Failed conversions since startup
+         */
+        public long getQuarantinedSinceStartup() {
+            return quarantinedSinceStartup;
+        }
+
+        /**
+         * Features skipped without conversion since startup, because they were quarantined with the same content
+         */
+        public long getSkippedSinceStartup() {
+            return skippedSinceStartup;
+        }
+
+        public long getReleasedSinceStartup() {
+            return releasedSinceStartup;
+        }
+
+        /**
+         * Features dropped since startup because they had no valid id
+         */
+        public long getInvalidSinceStartup() {
+            return invalidSinceStartup;
+        }
+    }
+}
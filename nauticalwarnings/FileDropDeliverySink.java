@@ -0,0 +1,74 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Delivery sink that writes S124 documents as files to a local directory, for systems that pick
+ * up warnings from a shared directory. Each document is written as {warning id}-{active|expired}.xml.
+ * Files are first written under a temporary name and then renamed, so readers never see partial files.
+ */
+@Component
+public class FileDropDeliverySink implements DeliverySink {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileDropDeliverySink.class);
+
+    @Value("${nautical-warnings.delivery.file-drop.enabled:false}")
+    private boolean enabled;
+    @Value("${nautical-warnings.delivery.file-drop.directory:}")
+    private String directory;
+
+    private Path dropDirectory;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (directory.isBlank()) {
+            throw new IllegalStateException("File drop delivery is enabled, but nautical-warnings.delivery.file-drop.directory is not set");
+        }
+        dropDirectory = Files.createDirectories(Paths.get(directory));
+        logger.info("Init: Nautical warnings are dropped as files to {}", dropDirectory.toAbsolutePath());
+    }
+
+    @Override
+    public String getName() {
+        return "file-drop";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void deliver(List<NauticalWarningEntity> warnings) {
+        for (var warning : warnings) {
+            var status = warning.getExpiredTime() == null ? "active" : "expired";
+            var target = dropDirectory.resolve(warning.getId() + "-" + status + ".xml");
+            try {
+                var temporary = Files.createTempFile(dropDirectory, ".nw-", ".tmp");
+                try {
+                    Files.write(temporary, warning.getS124Document().getBytes(StandardCharsets.UTF_8));
+                    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temporary);
+                }
+            } catch (IOException e) {
+                throw new IntegrationException("Could not write warning " + warning.getId() + " to " + target, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import fi.liikennevirasto.winvis.common.SharedHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * S-124 datasets published by neighbouring services, configured as nautical-warnings.foreign.datasets list,
+ * for example:
+ * <pre>
+ * nautical-warnings.foreign.datasets[0].name=se
+ * nautical-warnings.foreign.datasets[0].url=https://...
+ * nautical-warnings.foreign.datasets[0].poll-interval=5m
+ * </pre>
+ * Url is either http(s) url, or file url of a local dataset file. Dataset names must be unique, or startup fails.
+ */
+@Component
+@ConfigurationProperties(prefix = "nautical-warnings.foreign")
+public class ForeignDatasets {
+
+    private static final Logger logger = LoggerFactory.getLogger(ForeignDatasets.class);
+
+    private final SharedHttpClient httpClient;
+
+    private List<Dataset> datasets = new ArrayList<>();
+
+    @Autowired
+    public ForeignDatasets(SharedHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    @PostConstruct
+    public void init() {
+        var names = new HashSet<String>();
+        for (var dataset : datasets) {
+            if (dataset.getName() == null || dataset.getName().length() > 50 || !names.add(dataset.getName())) {
+                throw new IllegalStateException("Missing, too long or duplicate foreign S-124 dataset name " + dataset.getName());
+            }
+            var scheme = URI.create(dataset.getUrl()).getScheme();
+            if (!"file".equals(scheme) && !"http".equals(scheme) && !"https".equals(scheme)) {
+                throw new IllegalStateException("Unsupported url of foreign S-124 dataset " + dataset.getName() + ": " + dataset.getUrl());
+            }
+            logger.info("Init: Foreign S-124 dataset {} from {}, read every {}", dataset.getName(), dataset.getUrl(), dataset.getPollInterval());
+        }
+    }
+
+    /**
+     * Open given dataset for reading, either from local file or over http
+     *
+     * @param dataset
+     * @return dataset document, to be closed by the caller
+     */
+    public InputStream open(Dataset dataset) {
+        var url = URI.create(dataset.getUrl());
+        if ("file".equals(url.getScheme())) {
+            try {
+                return Files.newInputStream(Path.of(url));
+            } catch (IOException e) {
+                throw new IntegrationException("Could not open foreign S-124 dataset " + dataset.getName(), e);
+            }
+        }
+        return httpClient.getStream(url, Map.of("Accept", "application/xml"));
+    }
+
+    public List<Dataset> getDatasets() {
+        return datasets;
+    }
+
+    public void setDatasets(List<Dataset> datasets) {
+        this.datasets = datasets;
+    }
+
+    /**
+     * Configuration of single foreign dataset
+     */
+    public static class Dataset {
+        private String name;
+        private String url;
+        private Duration pollInterval = Duration.ofMinutes(5);
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeDeserializer;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeSerializer;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Feature of S-124 DataSet published by a neighbouring service: either navigational warning preamble,
+ * or warning part holding the geometry of the warning. Parts refer to their preamble with warningGmlId.
+ * Features are kept apart from our own NauticalWarningEntity data, and identified by their S-124 id
+ * within the dataset they were read from.
+ */
+@Entity
+@Table(name = "nautical_warnings_foreign", uniqueConstraints = {
+        @UniqueConstraint(name = "uq_nautical_warnings_foreign_s124_id", columnNames = {"source", "s124_id"})
+}, indexes = {
+        @Index(name = "idx_nautical_warnings_foreign_source", columnList = "source,expired_time")
+})
+public class ForeignWarningEntity {
+
+    public enum FeatureType {
+        PREAMBLE,
+        WARNING_PART
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Name of the foreign dataset this feature was read from
+     */
+    @Column(length = 50, nullable = false)
+    private String source;
+
+    @Column(length = 20, nullable = false)
+    @Enumerated(EnumType.STRING)
+    private FeatureType featureType;
+
+    /**
+     * S-124 id of the feature, or its gml:id if the feature has no id element
+     */
+    @Column(name = "s124_id", nullable = false)
+    private String s124Id;
+
+    private String gmlId;
+
+    /**
+     * gml:id of the preamble this warning part belongs to, or null for preambles
+     */
+    private String warningGmlId;
+
+    @Column(length = 10)
+    private String country;
+
+    private String nameOfSeries;
+
+    @Column(length = 50)
+    private String typeOfWarning;
+
+    @Column(length = 50)
+    private String warningNumber;
+
+    @Column(length = 10)
+    private String year;
+
+    private String generalArea;
+
+    @Column(length = 4000)
+    private String title;
+
+    /**
+     * Source date of the preamble as given in the dataset
+     */
+    @Column(length = 50)
+    private String sourceDate;
+
+    /**
+     * Start of fixed date range of the preamble (UTC), or null if not given
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    private LocalDateTime validityStartTime;
+
+    /**
+     * End of fixed date range of the preamble (UTC), or null if not given
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    private LocalDateTime validityEndTime;
+
+    /**
+     * Point, LineString or Polygon for warning parts with geometry
+     */
+    @Column(length = 20)
+    private String geometryType;
+
+    /**
+     * Coordinates of warning part geometry as GML pos list, latitude first
+     */
+    @Column(length = 10485760)
+    private String gmlPos;
+
+    @Column(length = 4000)
+    private String subject;
+
+    /**
+     * SHA-256 of the feature content, Base64 encoded, for noticing changed features between reads
+     */
+    @Column(length = 44)
+    private String contentHash;
+
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    private LocalDateTime firstSeenTime;
+
+    /**
+     * When the content of the feature last changed, or null if it has not changed since it was first seen
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    private LocalDateTime updatedTime;
+
+    /**
+     * When the feature was no longer in the dataset
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    @Column(name = "expired_time")
+    private LocalDateTime expiredTime;
+
+
+    public ForeignWarningEntity() {
+        // default constructor
+    }
+
+    public ForeignWarningEntity(FeatureType featureType) {
+        this.featureType = featureType;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public FeatureType getFeatureType() {
+        return featureType;
+    }
+
+    public void setFeatureType(FeatureType featureType) {
+        this.featureType = featureType;
+    }
+
+    public String getS124Id() {
+        return s124Id;
+    }
+
+    public void setS124Id(String s124Id) {
+        this.s124Id = s124Id;
+    }
+
+    public String getGmlId() {
+        return gmlId;
+    }
+
+    public void setGmlId(String gmlId) {
+        this.gmlId = gmlId;
+    }
+
+    public String getWarningGmlId() {
+        return warningGmlId;
+    }
+
+    public void setWarningGmlId(String warningGmlId) {
+        this.warningGmlId = warningGmlId;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public void setCountry(String country) {
+        this.country = country;
+    }
+
+    public String getNameOfSeries() {
+        return nameOfSeries;
+    }
+
+    public void setNameOfSeries(String nameOfSeries) {
+        this.nameOfSeries = nameOfSeries;
+    }
+
+    public String getTypeOfWarning() {
+        return typeOfWarning;
+    }
+
+    public void setTypeOfWarning(String typeOfWarning) {
+        this.typeOfWarning = typeOfWarning;
+    }
+
+    public String getWarningNumber() {
+        return warningNumber;
+    }
+
+    public void setWarningNumber(String warningNumber) {
+        this.warningNumber = warningNumber;
+    }
+
+    public String getYear() {
+        return year;
+    }
+
+    public void setYear(String year) {
+        this.year = year;
+    }
+
+    public String getGeneralArea() {
+        return generalArea;
+    }
+
+    public void setGeneralArea(String generalArea) {
+        this.generalArea = generalArea;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getSourceDate() {
+        return sourceDate;
+    }
+
+    public void setSourceDate(String sourceDate) {
+        this.sourceDate = sourceDate;
+    }
+
+    public LocalDateTime getValidityStartTime() {
+        return validityStartTime;
+    }
+
+    public void setValidityStartTime(LocalDateTime validityStartTime) {
+        this.validityStartTime = validityStartTime;
+    }
+
+    public LocalDateTime getValidityEndTime() {
+        return validityEndTime;
+    }
+
+    public void setValidityEndTime(LocalDateTime validityEndTime) {
+        this.validityEndTime = validityEndTime;
+    }
+
+    public String getGeometryType() {
+        return geometryType;
+    }
+
+    public void setGeometryType(String geometryType) {
+        this.geometryType = geometryType;
+    }
+
+    public String getGmlPos() {
+        return gmlPos;
+    }
+
+    public void setGmlPos(String gmlPos) {
+        this.gmlPos = gmlPos;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public LocalDateTime getFirstSeenTime() {
+        return firstSeenTime;
+    }
+
+    public void setFirstSeenTime(LocalDateTime firstSeenTime) {
+        this.firstSeenTime = firstSeenTime;
+    }
+
+    public LocalDateTime getUpdatedTime() {
+        return updatedTime;
+    }
+
+    public void setUpdatedTime(LocalDateTime updatedTime) {
+        this.updatedTime = updatedTime;
+    }
+
+    public LocalDateTime getExpiredTime() {
+        return expiredTime;
+    }
+
+    public void setExpiredTime(LocalDateTime expiredTime) {
+        this.expiredTime = expiredTime;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ForeignWarningEntity that = (ForeignWarningEntity) o;
+        return Objects.equals(id, that.id) &&
+                Objects.equals(source, that.source) &&
+                featureType == that.featureType &&
+                Objects.equals(s124Id, that.s124Id) &&
+                Objects.equals(gmlId, that.gmlId) &&
+                Objects.equals(warningGmlId, that.warningGmlId) &&
+                Objects.equals(country, that.country) &&
+                Objects.equals(nameOfSeries, that.nameOfSeries) &&
+                Objects.equals(typeOfWarning, that.typeOfWarning) &&
+                Objects.equals(warningNumber, that.warningNumber) &&
+                Objects.equals(year, that.year) &&
+                Objects.equals(generalArea, that.generalArea) &&
+                Objects.equals(title, that.title) &&
+                Objects.equals(sourceDate, that.sourceDate) &&
+                Objects.equals(validityStartTime, that.validityStartTime) &&
+                Objects.equals(validityEndTime, that.validityEndTime) &&
+                Objects.equals(geometryType, that.geometryType) &&
+                Objects.equals(gmlPos, that.gmlPos) &&
+                Objects.equals(subject, that.subject) &&
+                Objects.equals(contentHash, that.contentHash) &&
+                Objects.equals(firstSeenTime, that.firstSeenTime) &&
+                Objects.equals(updatedTime, that.updatedTime) &&
+                Objects.equals(expiredTime, that.expiredTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, source, featureType, s124Id, gmlId, warningGmlId, country, nameOfSeries, typeOfWarning,
+                warningNumber, year, generalArea, title, sourceDate, validityStartTime, validityEndTime, geometryType,
+                gmlPos, subject, contentHash, firstSeenTime, updatedTime, expiredTime);
+    }
+
+    @Override
+    public String toString() {
+        return "ForeignWarningEntity{" +
+                "id=" + id +
+                ", source='" + source + '\'' +
+                ", featureType=" + featureType +
+                ", s124Id='" + s124Id + '\'' +
+                ", gmlId='" + gmlId + '\'' +
+                ", warningGmlId='" + warningGmlId + '\'' +
+                ", country='" + country + '\'' +
+                ", nameOfSeries='" + nameOfSeries + '\'' +
+                ", typeOfWarning='" + typeOfWarning + '\'' +
+                ", warningNumber='" + warningNumber + '\'' +
+                ", year='" + year + '\'' +
+                ", generalArea='" + generalArea + '\'' +
+                ", title='" + title + '\'' +
+                ", sourceDate='" + sourceDate + '\'' +
+                ", validityStartTime=" + validityStartTime +
+                ", validityEndTime=" + validityEndTime +
+                ", geometryType='" + geometryType + '\'' +
+                ", gmlPos='" + gmlPos + '\'' +
+                ", subject='" + subject + '\'' +
+                ", contentHash='" + contentHash + '\'' +
+                ", firstSeenTime=" + firstSeenTime +
+                ", updatedTime=" + updatedTime +
+                ", expiredTime=" + expiredTime +
+                '}';
+    }
+}
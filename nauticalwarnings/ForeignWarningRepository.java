@@ -0,0 +1,30 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ForeignWarningRepository extends JpaRepository<ForeignWarningEntity, Long> {
+
+    List<ForeignWarningEntity> findAllByExpiredTimeIsNull();
+
+    List<ForeignWarningEntity> findAllBySourceAndExpiredTimeIsNull(String source);
+
+    /**
+     * Id, S-124 id, content hash and expiry time of each feature of given source, including expired features that
+     * have not been cleaned up yet, without the rest of the content
+     */
+    @Query("select f.id, f.s124Id, f.contentHash, f.expiredTime from ForeignWarningEntity f where f.source = ?1")
+    List<Object[]> findContentHashes(String source);
+
+    @Modifying
+    @Query("update ForeignWarningEntity f set f.expiredTime = ?2 where f.id in ?1")
+    int expireAllById(Collection<Long> ids, LocalDateTime expiredTime);
+
+    @Modifying
+    void deleteByExpiredTimeBefore(LocalDateTime expiryDate);
+}
@@ -0,0 +1,264 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Reads S-124 datasets of neighbouring services, and keeps their features in database alongside our own warnings.
+ * <p>
+ * Each read is compared to the active features of the same dataset by S-124 id, the same way pollForWarnings
+ * compares polled warnings: new features are added, changed features are updated, and features that are no
+ * longer in the dataset are expired. A feature that comes back to the dataset after it was expired is active
+ * again in its old row, since S-124 id is unique within dataset. Comparison is incremental, so that memory use
+ * does not grow with the size of the dataset: features are compared while the dataset is being read, and written
+ * in batches of their own short transactions. Only ids and content hashes of stored features are held in memory
+ * for the whole read.
+ * Features are expired only after the whole dataset has been read, so a read that fails half way does not
+ * expire anything.
+ */
+@Service
+public class ForeignWarningsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ForeignWarningsService.class);
+
+    /**
+     * How many ids are expired with single update
+     */
+    private static final int EXPIRE_CHUNK_SIZE = 1000;
+
+    private final ForeignWarningRepository foreignWarningRepository;
+    private final ForeignDatasets foreignDatasets;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${nautical-warnings.foreign.batch-size:500}")
+    private int batchSize;
+
+    @Autowired
+    public ForeignWarningsService(ForeignWarningRepository foreignWarningRepository, ForeignDatasets foreignDatasets,
+                                  PlatformTransactionManager transactionManager) {
+        this.foreignWarningRepository = foreignWarningRepository;
+        this.foreignDatasets = foreignDatasets;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Read given dataset, and compare it to features of the same dataset in database
+     *
+     * @param dataset
+     */
+    public void ingest(ForeignDatasets.Dataset dataset) {
+        logger.info("Reading foreign S-124 dataset {}", dataset.getName());
+        var beginTime = System.nanoTime();
+        var stored = new HashMap<String, StoredFeature>();
+        for (var row : foreignWarningRepository.findContentHashes(dataset.getName())) {
+            stored.put((String) row[1], new StoredFeature(((Number) row[0]).longValue(), (String) row[2], row[3] != null));
+        }
+        var ingestion = new Ingestion(dataset.getName(), stored);
+        int read;
+        try (var input = foreignDatasets.open(dataset)) {
+            read = S124DatasetReader.read(input, ingestion::accept);
+        } catch (IOException e) {
+            throw new IntegrationException("Could not read foreign S-124 dataset " + dataset.getName(), e);
+        }
+        ingestion.flush();
+
+        var expiredIds = stored.values().stream()
+                .filter(f -> !f.expired && !f.seen)
+                .map(f -> f.id)
+                .collect(toList());
+        var expiredTime = ingestion.readTime;
+        for (int i = 0; i < expiredIds.size(); i += EXPIRE_CHUNK_SIZE) {
+            var chunk = expiredIds.subList(i, Math.min(i + EXPIRE_CHUNK_SIZE, expiredIds.size()));
+            transactionTemplate.execute(status -> foreignWarningRepository.expireAllById(chunk, expiredTime));
+        }
+        logger.info("Read {} features of foreign S-124 dataset {} in {} ms: {} new, {} changed, {} reactivated, {} expired, {} skipped.",
+                read, dataset.getName(), (System.nanoTime() - beginTime) / 1000000,
+                ingestion.added, ingestion.changed, ingestion.reactivated, expiredIds.size(), ingestion.skipped);
+    }
+
+    /**
+     * All active features of foreign datasets, or of given dataset only
+     *
+     * @param source name of dataset, or null for all datasets
+     * @return
+     */
+    public List<ForeignWarningEntity> getActiveWarnings(String source) {
+        return source == null
+                ? foreignWarningRepository.findAllByExpiredTimeIsNull()
+                : foreignWarningRepository.findAllBySourceAndExpiredTimeIsNull(source);
+    }
+
+    /**
+     * Clean up db of foreign features that were expired more than a month ago
+     */
+    @Transactional
+    public void deleteOldExpired() {
+        LocalDateTime expiryDate = LocalDateTime.now().minus(Period.ofMonths(1));
+        foreignWarningRepository.deleteByExpiredTimeBefore(expiryDate);
+    }
+
+    /**
+     * SHA-256 of feature content, Base64 encoded
+     */
+    static String contentHash(ForeignWarningEntity feature) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            Stream.of(feature.getFeatureType(), feature.getGmlId(), feature.getWarningGmlId(), feature.getCountry(),
+                    feature.getNameOfSeries(), feature.getTypeOfWarning(), feature.getWarningNumber(), feature.getYear(),
+                    feature.getGeneralArea(), feature.getTitle(), feature.getSourceDate(), feature.getValidityStartTime(),
+                    feature.getValidityEndTime(), feature.getGeometryType(), feature.getGmlPos(), feature.getSubject())
+                    .forEach(value -> {
+                        digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+                        digest.update((byte) 0);
+                    });
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void copyContent(ForeignWarningEntity from, ForeignWarningEntity to) {
+        to.setFeatureType(from.getFeatureType());
+        to.setGmlId(from.getGmlId());
+        to.setWarningGmlId(from.getWarningGmlId());
+        to.setCountry(from.getCountry());
+        to.setNameOfSeries(from.getNameOfSeries());
+        to.setTypeOfWarning(from.getTypeOfWarning());
+        to.setWarningNumber(from.getWarningNumber());
+        to.setYear(from.getYear());
+        to.setGeneralArea(from.getGeneralArea());
+        to.setTitle(from.getTitle());
+        to.setSourceDate(from.getSourceDate());
+        to.setValidityStartTime(from.getValidityStartTime());
+        to.setValidityEndTime(from.getValidityEndTime());
+        to.setGeometryType(from.getGeometryType());
+        to.setGmlPos(from.getGmlPos());
+        to.setSubject(from.getSubject());
+        to.setContentHash(from.getContentHash());
+    }
+
+    /**
+     * Id and content hash of feature that was in database before the read, and whether it was expired
+     */
+    private static final class StoredFeature {
+        private final long id;
+        private final String contentHash;
+        private final boolean expired;
+        private boolean seen;
+
+        StoredFeature(long id, String contentHash, boolean expired) {
+            this.id = id;
+            this.contentHash = contentHash;
+            this.expired = expired;
+        }
+    }
+
+    /**
+     * State of single read of dataset: features waiting to be written, and features seen so far
+     */
+    private final class Ingestion {
+        private final String source;
+        private final Map<String, StoredFeature> stored;
+        private final HashSet<String> seenNewIds = new HashSet<>();
+        private final LocalDateTime readTime = ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+        private final List<ForeignWarningEntity> newFeatures = new ArrayList<>();
+        private final Map<Long, ForeignWarningEntity> changedFeatures = new LinkedHashMap<>();
+        private int added;
+        private int changed;
+        private int reactivated;
+        private int skipped;
+
+        Ingestion(String source, Map<String, StoredFeature> stored) {
+            this.source = source;
+            this.stored = stored;
+        }
+
+        void accept(ForeignWarningEntity feature) {
+            var s124Id = feature.getS124Id();
+            if (s124Id == null) {
+                logger.warn("Skipping feature without id in foreign S-124 dataset {}", source);
+                skipped++;
+                return;
+            }
+            feature.setContentHash(contentHash(feature));
+            var existing = stored.get(s124Id);
+            if (existing == null) {
+                if (!seenNewIds.add(s124Id)) {
+                    logger.warn("Skipping duplicate feature {} in foreign S-124 dataset {}", s124Id, source);
+                    skipped++;
+                    return;
+                }
+                feature.setSource(source);
+                feature.setFirstSeenTime(readTime);
+                newFeatures.add(feature);
+                added++;
+            } else {
+                if (existing.seen) {
+                    logger.warn("Skipping duplicate feature {} in foreign S-124 dataset {}", s124Id, source);
+                    skipped++;
+                    return;
+                }
+                existing.seen = true;
+                if (existing.expired) {
+                    // Back in the dataset after it was expired, written as changed so that it is active again
+                    changedFeatures.put(existing.id, feature);
+                    reactivated++;
+                } else if (!Objects.equals(existing.contentHash, feature.getContentHash())) {
+                    changedFeatures.put(existing.id, feature);
+                    changed++;
+                }
+            }
+            if (newFeatures.size() + changedFeatures.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Write pending features in one short transaction
+         */
+        void flush() {
+            if (newFeatures.isEmpty() && changedFeatures.isEmpty()) {
+                return;
+            }
+            transactionTemplate.execute(status -> {
+                foreignWarningRepository.saveAll(newFeatures);
+                var updated = foreignWarningRepository.findAllById(changedFeatures.keySet());
+                for (var feature : updated) {
+                    copyContent(changedFeatures.get(feature.getId()), feature);
+                    feature.setUpdatedTime(readTime);
+                    feature.setExpiredTime(null);
+                }
+                foreignWarningRepository.saveAll(updated);
+                return null;
+            });
+            newFeatures.clear();
+            changedFeatures.clear();
+        }
+    }
+}
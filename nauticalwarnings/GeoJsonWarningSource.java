@@ -0,0 +1,75 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fi.liikennevirasto.winvis.common.SharedHttpClient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.StreamSupport;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Additional source of nautical warnings, serving a GeoJSON FeatureCollection in the same format
+ * as Digitraffic nautical warnings API. These are configured as nautical-warnings.sources.geojson list,
+ * see WarningSources.
+ */
+public class GeoJsonWarningSource implements WarningSource {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String name;
+    private final int namespace;
+    private final URI url;
+    private final Duration pollInterval;
+    private final SharedHttpClient httpClient;
+
+    public GeoJsonWarningSource(String name, int namespace, URI url, Duration pollInterval, SharedHttpClient httpClient) {
+        this.name = name;
+        this.namespace = namespace;
+        this.url = url;
+        this.pollInterval = pollInterval;
+        this.httpClient = httpClient;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getNamespace() {
+        return namespace;
+    }
+
+    @Override
+    public Duration getPollInterval() {
+        return pollInterval;
+    }
+
+    @Override
+    public List<JsonNode> fetchWarnings() {
+        var body = httpClient.get(url, Map.of("Accept", "application/json"));
+        try {
+            var features = objectMapper.readTree(body).withArray("features");
+            return StreamSupport.stream(features.spliterator(), false)
+                    .collect(toList());
+        } catch (IOException e) {
+            throw new IntegrationException("Could not parse warnings of source " + name, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GeoJsonWarningSource{" +
+                "name='" + name + '\'' +
+                ", namespace=" + namespace +
+                ", url=" + url +
+                ", pollInterval=" + pollInterval +
+                '}';
+    }
+}
@@ -1,86 +1,300 @@
 package fi.liikennevirasto.winvis.nauticalwarnings;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.io.IOUtils;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.TopologyException;
+import org.locationtech.jts.io.WKBWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.wololo.geojson.Feature;
 import org.wololo.geojson.GeoJSONFactory;
 import org.wololo.jts2geojson.GeoJSONReader;
 
+import javax.annotation.PostConstruct;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.stream.StreamSupport;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.stream.Collectors.toList;
 
+/**
+ * Matches nautical warning locations to the restricted set of S124 general areas.
+ * <p>
+ * Area definitions are loaded as a precompiled binary dataset (see SeaAreaDatasetCodec). If external dataset
+ * path is configured, that file is memory mapped and checked periodically for changes, so area boundaries can
+ * be updated without a redeploy. Otherwise the dataset bundled with the application is used. The current
+ * dataset is swapped atomically as a whole, so matching always sees one consistent version of the areas.
+ */
 @Service
 public class GeoLocationMatcher {
 
+    private static final Logger logger = LoggerFactory.getLogger(GeoLocationMatcher.class);
 
-    private static String shapeFile;
+    private static final String BUNDLED_DATASET = "/nautical-warnings/nw-sea-areas.bin";
+    private static final String BUNDLED_GEOJSON = "/nautical-warnings/nw-sea-areas-converted.json";
+    private static final String DEFAULT_AREA_NAME = "Baltic sea";
 
-    static {
-        try (var inputStream =
-                     GeoLocationMatcher.class
-                             .getResourceAsStream(
-                                     "/nautical-warnings/nw-sea-areas-converted.json")) {
-            shapeFile = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+    /**
+     * How much larger coverage the best area must have over the next one at coarse level,
+     * before it is accepted without comparing full resolution geometries
+     */
+    private static final double AMBIGUITY_MARGIN = 0.1;
+
+    private static final Comparator<AreaCoverage> BY_LARGEST_COVERAGE =
+            Comparator.comparingDouble((AreaCoverage c) -> c.coverage).reversed();
+
+    @Value("${nautical-warnings.sea-areas.path:}")
+    private String externalDatasetPath;
+
+    @Value("${nautical-warnings.sea-areas.match-cache-size:10000}")
+    private int matchCacheSize;
+
+    private final AtomicReference<SeaAreaDataset> dataset = new AtomicReference<>();
+
+    /**
+     * Matched area names by dataset version and geometry fingerprint, least recently used dropped first
+     */
+    private Map<String, String> matchCache;
+
+
+    @PostConstruct
+    public void init() {
+        this.matchCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > matchCacheSize;
+            }
+        });
+        try {
+            var initialDataset = hasExternalDataset()
+                    ? SeaAreaDatasetCodec.read(Paths.get(externalDatasetPath), 1)
+                    : loadBundledDataset();
+            dataset.set(initialDataset);
+            logger.info("Init: Loaded sea areas {}", initialDataset);
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new IllegalStateException("Could not load sea area dataset", e);
         }
     }
 
-
     /**
      * Since S124 uses a restricted set of area names, we cannot just use any name, but instead we need to
      * figure correct area name out based on geojson geometry coordinates
+     * <p>
+     * Warning is placed in the area that covers largest part of its geometry, so warnings crossing area
+     * borders get an area too. Results are memoised by geometry, so repeated warnings are not matched again.
      *
      * @param feature
      * @return
      */
-    public static String findGeneralAreaName(JsonNode feature) {
+    public String findGeneralAreaName(JsonNode feature) {
+        var featureGeometry = readGeometry(feature);
+        var currentDataset = dataset.get();
+        var cacheKey = currentDataset.getVersion() + ":" + fingerprint(featureGeometry);
+        var cachedAreaName = matchCache.get(cacheKey);
+        if (cachedAreaName != null) {
+            return cachedAreaName;
+        }
+        var areaName = matchArea(currentDataset, featureGeometry)
+                .map(SeaArea::getName)
+                .orElse(DEFAULT_AREA_NAME);
+        matchCache.put(cacheKey, areaName);
+        return areaName;
+    }
+
+    /**
+     * Find area with largest coverage of given geometry. Areas whose bounds do not touch the geometry are
+     * skipped right away, and the rest are first compared using their simplified geometries. Only if that
+     * does not give a clear winner, the closest candidates are compared again using full resolution geometries.
+     *
+     * @param areaDataset
+     * @param featureGeometry
+     * @return matching area, or empty if geometry is not in any of the areas
+     */
+    static Optional<SeaArea> matchArea(SeaAreaDataset areaDataset, Geometry featureGeometry) {
+        var featureBounds = featureGeometry.getEnvelopeInternal();
+        var coarseCoverages = areaDataset.getAreas().stream()
+                .filter(area -> area.getBounds().intersects(featureBounds))
+                .map(area -> new AreaCoverage(area, coverage(area.getSimplifiedGeometry(), featureGeometry)))
+                .sorted(BY_LARGEST_COVERAGE)
+                .collect(toList());
+        if (coarseCoverages.isEmpty()) {
+            return Optional.empty();
+        }
+
+        var best = coarseCoverages.get(0);
+        var runnerUpCoverage = coarseCoverages.size() > 1 ? coarseCoverages.get(1).coverage : 0.0;
+        if (best.coverage > 0 && best.coverage - runnerUpCoverage >= AMBIGUITY_MARGIN) {
+            return Optional.of(best.area);
+        }
+
+        // Ambiguous at coarse level, so refine all candidates close to the best one. If nothing
+        // matched at coarse level, that means all candidates, since simplification may have cut
+        // away small overlaps near the coastline.
+        var refinementThreshold = best.coverage - AMBIGUITY_MARGIN;
+        return coarseCoverages.stream()
+                .filter(c -> c.coverage >= refinementThreshold)
+                .map(c -> new AreaCoverage(c.area, fullResolutionCoverage(c.area, featureGeometry)))
+                .filter(c -> c.coverage > 0)
+                .sorted(BY_LARGEST_COVERAGE)
+                .map(c -> c.area)
+                .findFirst();
+    }
+
+    private static double fullResolutionCoverage(SeaArea area, Geometry featureGeometry) {
+        var preparedArea = area.getPreparedGeometry();
+        if (preparedArea.covers(featureGeometry)) {
+            return 1.0;
+        }
+        if (!preparedArea.intersects(featureGeometry)) {
+            return 0.0;
+        }
+        return coverage(area.getGeometry(), featureGeometry);
+    }
+
+    /**
+     * Share of feature geometry that is inside area geometry: share of points for point geometries,
+     * share of length for line geometries and share of surface for polygon geometries.
+     *
+     * @param areaGeometry
+     * @param featureGeometry
+     * @return value between 0 and 1
+     */
+    static double coverage(Geometry areaGeometry, Geometry featureGeometry) {
+        try {
+            switch (featureGeometry.getDimension()) {
+                case 0:
+                    var pointCount = featureGeometry.getNumGeometries();
+                    var coveredPoints = 0;
+                    for (int i = 0; i < pointCount; i++) {
+                        if (areaGeometry.covers(featureGeometry.getGeometryN(i))) {
+                            coveredPoints++;
+                        }
+                    }
+                    return pointCount == 0 ? 0.0 : (double) coveredPoints / pointCount;
+                case 1:
+                    if (featureGeometry.getLength() == 0) {
+                        return areaGeometry.covers(featureGeometry) ? 1.0 : 0.0;
+                    }
+                    return areaGeometry.intersection(featureGeometry).getLength() / featureGeometry.getLength();
+                default:
+                    if (featureGeometry.getArea() == 0) {
+                        return areaGeometry.covers(featureGeometry) ? 1.0 : 0.0;
+                    }
+                    return areaGeometry.intersection(featureGeometry).getArea() / featureGeometry.getArea();
+            }
+        } catch (TopologyException e) {
+            // Overlay fails on some invalid geometries, in which case only a representative point is checked
+            logger.debug("Could not calculate area coverage, falling back to interior point", e);
+            return areaGeometry.covers(featureGeometry.getInteriorPoint()) ? 1.0 : 0.0;
+        }
+    }
 
+    /**
+     * Fingerprint of geometry that is the same for geometries with the same vertices, regardless of
+     * their order or orientation
+     */
+    private static String fingerprint(Geometry geometry) {
         try {
-            var featureCollectionRootNode = new ObjectMapper().readValue(GeoLocationMatcher.shapeFile, ObjectNode.class);
-            var shapeFeatureNodes = featureCollectionRootNode.withArray("features");
-            var matchingFeatures = StreamSupport.stream(shapeFeatureNodes.spliterator(), false)
-                    .filter(shapeFeatureNode -> isPointInShape(feature, shapeFeatureNode))
-                    .collect(toList());
-            if (matchingFeatures.size() == 1) {
-                return matchingFeatures.get(0).get("properties").get("ENG_UID").asText();
-            } else {
-                return "Baltic sea";
+            var wkb = new WKBWriter().write(geometry.norm());
+            var digest = MessageDigest.getInstance("SHA-256").digest(wkb);
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class AreaCoverage {
+        private final SeaArea area;
+        private final double coverage;
+
+        AreaCoverage(SeaArea area, double coverage) {
+            this.area = area;
+            this.coverage = coverage;
+        }
+    }
+
+    /**
+     * Check whether external dataset file has changed, and if so, load it and swap it in place of the current one.
+     * Dataset is only replaced if it loads successfully and its checksum differs from the current one, otherwise
+     * the current dataset is kept.
+     */
+    @Scheduled(initialDelayString = "${nautical-warnings.sea-areas.reload-frequency:60000}",
+            fixedDelayString = "${nautical-warnings.sea-areas.reload-frequency:60000}")
+    public void reloadIfChanged() {
+        if (!hasExternalDataset()) {
+            return;
+        }
+        var path = Paths.get(externalDatasetPath);
+        try {
+            var current = dataset.get();
+            if (SeaAreaDatasetCodec.readChecksum(path) == current.getChecksum()) {
+                return;
+            }
+            var reloaded = SeaAreaDatasetCodec.read(path, current.getVersion() + 1);
+            if (dataset.compareAndSet(current, reloaded)) {
+                // Matches of previous version are never looked up again
+                matchCache.clear();
+                logger.info("Reloaded sea areas {}", reloaded);
             }
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            logger.error("Could not reload sea area dataset from {}, keeping current dataset {}",
+                    path, dataset.get(), e);
         }
+    }
 
+    public SeaAreaDataset getDataset() {
+        return dataset.get();
     }
 
+    /**
+     * Forget all cached matches, for example after matching synthetic warm-up warnings
+     */
+    public void clearMatchCache() {
+        matchCache.clear();
+    }
+
+    private boolean hasExternalDataset() {
+        return externalDatasetPath != null && !externalDatasetPath.isBlank()
+                && Files.isRegularFile(Path.of(externalDatasetPath));
+    }
 
     /**
-     * Simple algorithm to compare two JSON nodes, and find out if original feature
-     * geometry is located inside shape feature geometry
-     *
-     * @param originalFeature
-     * @param shapeFeatureNode
-     * @return
+     * Load the dataset bundled with application. If there's no precompiled binary dataset available,
+     * compile it from the bundled sea area geojson instead.
      */
-    private static boolean isPointInShape(JsonNode originalFeature, JsonNode shapeFeatureNode) {
-        Feature feature1 = (Feature) GeoJSONFactory.create(originalFeature.toString());
-        Feature feature2 = (Feature) GeoJSONFactory.create(shapeFeatureNode.toString());
-        var geoJSONReader = new GeoJSONReader();
-        var originalGeometry = geoJSONReader.read(feature1.getGeometry());
-        var shapeFileGeometry = geoJSONReader.read(feature2.getGeometry());
-        if (shapeFileGeometry.contains(originalGeometry)) {
-            return true;
-        } else {
-            return false;
+    private static SeaAreaDataset loadBundledDataset() throws IOException {
+        try (var inputStream = GeoLocationMatcher.class.getResourceAsStream(BUNDLED_DATASET)) {
+            if (inputStream != null) {
+                return SeaAreaDatasetCodec.decode(ByteBuffer.wrap(IOUtils.toByteArray(inputStream)), 1, BUNDLED_DATASET);
+            }
+        }
+        logger.warn("No precompiled sea area dataset {} found, compiling it from {}", BUNDLED_DATASET, BUNDLED_GEOJSON);
+        try (var inputStream = GeoLocationMatcher.class.getResourceAsStream(BUNDLED_GEOJSON)) {
+            var geoJson = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+            var bytes = SeaAreaDatasetCodec.encode(SeaAreaDatasetCodec.fromGeoJson(geoJson));
+            return SeaAreaDatasetCodec.decode(ByteBuffer.wrap(bytes), 1, BUNDLED_GEOJSON);
         }
     }
 
+    private static Geometry readGeometry(JsonNode feature) {
+        Feature geoJsonFeature = (Feature) GeoJSONFactory.create(feature.toString());
+        return new GeoJSONReader().read(geoJsonFeature.getGeometry());
+    }
 
 }
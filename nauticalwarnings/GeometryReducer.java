@@ -0,0 +1,162 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.util.AffineTransformation;
+import org.locationtech.jts.geom.util.NoninvertibleTransformationException;
+import org.locationtech.jts.precision.GeometryPrecisionReducer;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.wololo.jts2geojson.GeoJSONReader;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Optional reduction of warning geometries before they are encoded to S124 coordinates, to keep
+ * documents with detailed coastlines small. Two independent steps, both off by default:
+ * <ul>
+ *     <li>topology preserving Douglas-Peucker simplification, with tolerance in metres. Geometry is
+ *     simplified in a local equirectangular projection around its centre, so the tolerance means the
+ *     same distance both north-south and east-west.</li>
+ *     <li>fixed precision coordinates, rounded to given number of decimals. 5 decimals is about one metre.</li>
+ * </ul>
+ * Only the encoded S124 coordinates are reduced. Area matching always uses the original geometry.
+ */
+@Component
+public class GeometryReducer {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeometryReducer.class);
+
+    private static final double METERS_PER_DEGREE = 111320.0;
+    /**
+     * Enough significant digits for any coordinate, while dropping floating point noise from projecting back and forth
+     */
+    private static final MathContext SIGNIFICANT_DIGITS = new MathContext(15);
+
+    @Value("${nautical-warnings.geometry.simplify-tolerance-meters:0}")
+    private double toleranceMeters;
+    @Value("${nautical-warnings.geometry.coordinate-decimals:-1}")
+    private int coordinateDecimals;
+
+    private PrecisionModel precisionModel;
+
+    @PostConstruct
+    public void init() {
+        if (coordinateDecimals >= 0) {
+            precisionModel = new PrecisionModel(Math.pow(10, coordinateDecimals));
+        }
+        if (isEnabled()) {
+            logger.info("Init: Reducing S124 geometries with simplification tolerance {}m and {} coordinate decimals",
+                    toleranceMeters, coordinateDecimals >= 0 ? coordinateDecimals : "original");
+        }
+    }
+
+    /**
+     * Whether any reduction is configured. If not, coordinates are encoded exactly as they were sent.
+     */
+    public boolean isEnabled() {
+        return toleranceMeters > 0 || coordinateDecimals >= 0;
+    }
+
+    /**
+     * Reduce given GeoJSON geometry, and encode it to S124 gml:pos / gml:posList format, in 'lat lon' order.
+     * For polygons only the exterior ring is encoded, as in NauticalWarningsService.transformCoordinateFormat.
+     *
+     * @param geoJsonGeometry
+     * @return
+     */
+    public String reduceToGmlPos(JsonNode geoJsonGeometry) {
+        var geometry = new GeoJSONReader().read(geoJsonGeometry.toString());
+        return toGmlPos(reduce(geometry));
+    }
+
+    /**
+     * Number of positions in coordinates encoded in gml:pos / gml:posList format
+     *
+     * @param gmlPos
+     * @return
+     */
+    public static int countPositions(String gmlPos) {
+        var values = gmlPos.isBlank() ? 0 : gmlPos.trim().split("\\s+").length;
+        return values / 2;
+    }
+
+    Geometry reduce(Geometry geometry) {
+        var reduced = geometry;
+        if (toleranceMeters > 0 && geometry.getDimension() > 0) {
+            reduced = simplify(reduced);
+        }
+        if (precisionModel != null) {
+            reduced = reducePrecision(reduced);
+        }
+        return reduced;
+    }
+
+    /**
+     * Round coordinates of given geometry, keeping it valid if possible. Rounding may split a polygon with a
+     * narrow neck into a multipolygon, or collapse a small area entirely, which could not be encoded as the
+     * geometry type of the warning. Coordinates are then rounded one by one, or left as they are if even that
+     * does not keep the geometry.
+     */
+    private Geometry reducePrecision(Geometry geometry) {
+        try {
+            var reduced = GeometryPrecisionReducer.reduce(geometry, precisionModel);
+            if (keepsGeometry(geometry, reduced)) {
+                return reduced;
+            }
+            logger.info("Rounding {} to {} decimals gave {}, rounding each coordinate instead",
+                    geometry.getGeometryType(), coordinateDecimals, reduced.isEmpty() ? "empty geometry" : reduced.getGeometryType());
+        } catch (IllegalArgumentException e) {
+            // Rounding would make polygon invalid, round each coordinate instead
+        }
+        var reduced = GeometryPrecisionReducer.reducePointwise(geometry, precisionModel);
+        if (keepsGeometry(geometry, reduced)) {
+            return reduced;
+        }
+        logger.warn("Could not round {} to {} decimals, encoding original geometry", geometry.getGeometryType(), coordinateDecimals);
+        return geometry;
+    }
+
+    private static boolean keepsGeometry(Geometry original, Geometry reduced) {
+        return !reduced.isEmpty() && reduced.getGeometryType().equals(original.getGeometryType());
+    }
+
+    private Geometry simplify(Geometry geometry) {
+        var centreLatitude = geometry.getEnvelopeInternal().centre().y;
+        var toMeters = AffineTransformation.scaleInstance(
+                METERS_PER_DEGREE * Math.cos(Math.toRadians(centreLatitude)), METERS_PER_DEGREE);
+        try {
+            var simplified = TopologyPreservingSimplifier.simplify(toMeters.transform(geometry), toleranceMeters);
+            return toMeters.getInverse().transform(simplified);
+        } catch (NoninvertibleTransformationException e) {
+            // Only happens at the poles, where there's nothing to warn about
+            return geometry;
+        }
+    }
+
+    private String toGmlPos(Geometry geometry) {
+        var encoded = geometry instanceof Polygon ? ((Polygon) geometry).getExteriorRing() : geometry;
+        var gmlPos = new StringBuilder();
+        for (Coordinate coordinate : encoded.getCoordinates()) {
+            gmlPos.append(format(coordinate.y)).append(' ').append(format(coordinate.x)).append(' ');
+        }
+        return gmlPos.toString().trim();
+    }
+
+    private String format(double value) {
+        var decimal = new BigDecimal(value).round(SIGNIFICANT_DIGITS);
+        if (coordinateDecimals >= 0) {
+            decimal = decimal.setScale(coordinateDecimals, RoundingMode.HALF_UP);
+        }
+        return decimal.stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,62 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Delivery sink that publishes S124 documents to a bounded in-memory queue. This stands in for a message
+ * broker until one is available: in-process consumers take documents with {@link #drain(int)}. When the
+ * queue is full, delivery fails and is retried later, like it would when a broker is unavailable.
+ */
+@Component
+public class InMemoryQueueDeliverySink implements DeliverySink {
+
+    @Value("${nautical-warnings.delivery.queue.enabled:false}")
+    private boolean enabled;
+    @Value("${nautical-warnings.delivery.queue.capacity:10000}")
+    private int capacity;
+
+    private BlockingQueue<String> messages;
+
+    @PostConstruct
+    public void init() {
+        messages = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public String getName() {
+        return "queue";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void deliver(List<NauticalWarningEntity> warnings) {
+        for (var warning : warnings) {
+            if (!messages.offer(warning.getS124Document())) {
+                throw new IntegrationException("Message queue is full, could not publish warning " + warning.getId());
+            }
+        }
+    }
+
+    /**
+     * Take at most given number of published S124 documents from the queue, oldest first
+     *
+     * @param maxMessages
+     * @return
+     */
+    public List<String> drain(int maxMessages) {
+        var drained = new ArrayList<String>();
+        messages.drainTo(drained, maxMessages);
+        return drained;
+    }
+}
@@ -0,0 +1,163 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory latency histograms of warning propagation, one per stage since application start. Stages are:
+ * <ul>
+ *     <li>polling: published in source until first seen by poller, ie. source lag plus polling interval</li>
+ *     <li>pipeline: first seen until stored to database, ie. conversion and persisting</li>
+ *     <li>poll-transaction: duration of the write transaction of a poll, ie. how long a database connection is held</li>
+ *     <li>queue:{sink}: stored until delivery attempt to sink started</li>
+ *     <li>delivery:{sink}: duration of successful delivery attempt, ie. time spent in the sink</li>
+ *     <li>end-to-end:{sink}: published in source until delivered to sink</li>
+ * </ul>
+ * Buckets are fixed and roughly logarithmic, from 100ms to an hour, so recording is lock free and cheap.
+ */
+@Component
+public class LatencyHistograms {
+
+    private static final long[] BUCKET_UPPER_BOUNDS_MILLIS = {
+            100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 120000, 300000, 600000, 1800000, 3600000, Long.MAX_VALUE
+    };
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Record latency of given stage. Negative latencies, from clock differences between systems, are recorded as zero.
+     *
+     * @param stage
+     * @param latency
+     */
+    public void record(String stage, Duration latency) {
+        histograms.computeIfAbsent(stage, Histogram::new).record(Math.max(0, latency.toMillis()));
+    }
+
+    /**
+     * Current state of every histogram, sorted by stage name
+     */
+    public List<Snapshot> getSnapshots() {
+        var snapshots = new ArrayList<Snapshot>();
+        histograms.values().forEach(histogram -> snapshots.add(histogram.snapshot()));
+        snapshots.sort(Comparator.comparing(Snapshot::getStage));
+        return snapshots;
+    }
+
+    private static final class Histogram {
+        private final String stage;
+        private final LongAdder[] buckets = new LongAdder[BUCKET_UPPER_BOUNDS_MILLIS.length];
+        private final LongAdder totalMillis = new LongAdder();
+        private final AtomicLong maxMillis = new AtomicLong();
+
+        private Histogram(String stage) {
+            this.stage = stage;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long millis) {
+            int bucket = 0;
+            while (millis > BUCKET_UPPER_BOUNDS_MILLIS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            totalMillis.add(millis);
+            maxMillis.accumulateAndGet(millis, Math::max);
+        }
+
+        private Snapshot snapshot() {
+            var counts = new long[buckets.length];
+            long count = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                count += counts[i];
+            }
+            return new Snapshot(stage, counts, count, totalMillis.sum(), maxMillis.get());
+        }
+    }
+
+    /**
+     * Histogram state at one moment. Percentiles are upper bounds of the buckets they fall in.
+     */
+    public static final class Snapshot {
+        private final String stage;
+        private final long[] counts;
+        private final long count;
+        private final long totalMillis;
+        private final long maxMillis;
+
+        private Snapshot(String stage, long[] counts, long count, long totalMillis, long maxMillis) {
+            this.stage = stage;
+            this.counts = counts;
+            this.count = count;
+            this.totalMillis = totalMillis;
+            this.maxMillis = maxMillis;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMillis() {
+            return count == 0 ? 0.0 : (double) totalMillis / count;
+        }
+
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+
+        public long getP50Millis() {
+            return percentile(0.50);
+        }
+
+        public long getP90Millis() {
+            return percentile(0.90);
+        }
+
+        public long getP99Millis() {
+            return percentile(0.99);
+        }
+
+        /**
+         * Count of latencies in each bucket, by bucket upper bound in milliseconds ('inf' for the last one)
+         */
+        public Map<String, Long> getBuckets() {
+            var buckets = new LinkedHashMap<String, Long>();
+            for (int i = 0; i < counts.length; i++) {
+                var bound = BUCKET_UPPER_BOUNDS_MILLIS[i];
+                buckets.put(bound == Long.MAX_VALUE ? "inf" : String.valueOf(bound), counts[i]);
+            }
+            return buckets;
+        }
+
+        private long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            var rank = (long) Math.ceil(percentile * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(BUCKET_UPPER_BOUNDS_MILLIS[i], maxMillis);
+                }
+            }
+            return maxMillis;
+        }
+    }
+}
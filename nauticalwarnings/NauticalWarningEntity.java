@@ -16,12 +16,26 @@ import java.util.Objects;
  * and serve as XML for any interested parties.
  */
 @Entity
-@Table(name = "digitraffic_nautical_warnings")
+@Table(name = "digitraffic_nautical_warnings", indexes = {
+        @Index(name = "idx_nautical_warnings_general_area", columnList = "general_area"),
+        @Index(name = "idx_nautical_warnings_type_of_warning", columnList = "type_of_warning"),
+        @Index(name = "idx_nautical_warnings_warning_number", columnList = "warning_number"),
+        @Index(name = "idx_nautical_warnings_validity", columnList = "validity_start_time,expired_time"),
+        @Index(name = "idx_nautical_warnings_validity_end", columnList = "validity_end_time,expired_time"),
+        @Index(name = "idx_nautical_warnings_source", columnList = "source,expired_time")
+})
 public class NauticalWarningEntity {
 
     @Id
     private long id;
 
+    /**
+     * Name of the WarningSource this warning was polled from, or null for warnings
+     * stored before there were several sources, which all came from Digitraffic
+     */
+    @Column(length = 50)
+    private String source;
+
     /**
      * Original Digitraffic nautical warning geojson document
      */
@@ -60,15 +74,68 @@ public class NauticalWarningEntity {
      */
     @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
     @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    @Column(name = "expired_time")
     private LocalDateTime expiredTime;
 
     /**
-     * When message was delivered to SMA, or null for failed delivery
+     * When the warning was published in its source (UTC), from publishingTime of original json
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    private LocalDateTime publishedTime;
+
+    /**
+     * When the poller first fetched the warning from its source (UTC)
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    private LocalDateTime firstSeenTime;
+
+    /**
+     * When the S124 document of the active warning was rendered (UTC)
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    private LocalDateTime renderedTime;
+
+    /**
+     * When the new warning was stored to database (UTC)
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    private LocalDateTime persistedTime;
+
+    /**
+     * When message was delivered to SMA, or null for failed delivery.
+     * No longer updated, delivery to each sink is tracked as WarningDeliveryEntity.
      */
     @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
     @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
     private LocalDateTime smaDeliveryTime;
 
+    /**
+     * S124 schema validation error, or null if s124 document is valid. Warnings
+     * with validation error are quarantined and never delivered to any sink.
+     */
+    @Column(length = 4000)
+    private String validationError;
+
+    /**
+     * Start of validity (UTC) of a warning that was not yet valid when first seen. It is stored, but not
+     * delivered to any sink until this moment, when it is cleared. Null for warnings delivered as active.
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    @Column(name = "activation_time")
+    private LocalDateTime activationTime;
+
+    /**
+     * Structured S124 template parameters the s124 document was rendered from,
+     * or null for warnings stored before these were persisted
+     */
+    @Embedded
+    private S124WarningParameters s124Parameters;
+
 
     public NauticalWarningEntity() {
         // default constructor
@@ -80,6 +147,11 @@ public class NauticalWarningEntity {
         this.jsonDocument = jsonDocument;
     }
 
+    public NauticalWarningEntity(long id, String jsonDocument, String s124Document, S124WarningParameters s124Parameters) {
+        this(id, jsonDocument, s124Document);
+        this.s124Parameters = s124Parameters;
+    }
+
     @PrePersist
     public void prePersist() {
         createdTime = LocalDateTime.now();
@@ -98,6 +170,14 @@ public class NauticalWarningEntity {
         this.id = id;
     }
 
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
     public String getS124Document() {
         return s124Document;
     }
@@ -130,6 +210,38 @@ public class NauticalWarningEntity {
         this.expiredTime = expiredTime;
     }
 
+    public LocalDateTime getPublishedTime() {
+        return publishedTime;
+    }
+
+    public void setPublishedTime(LocalDateTime publishedTime) {
+        this.publishedTime = publishedTime;
+    }
+
+    public LocalDateTime getFirstSeenTime() {
+        return firstSeenTime;
+    }
+
+    public void setFirstSeenTime(LocalDateTime firstSeenTime) {
+        this.firstSeenTime = firstSeenTime;
+    }
+
+    public LocalDateTime getRenderedTime() {
+        return renderedTime;
+    }
+
+    public void setRenderedTime(LocalDateTime renderedTime) {
+        this.renderedTime = renderedTime;
+    }
+
+    public LocalDateTime getPersistedTime() {
+        return persistedTime;
+    }
+
+    public void setPersistedTime(LocalDateTime persistedTime) {
+        this.persistedTime = persistedTime;
+    }
+
     public LocalDateTime getSmaDeliveryTime() {
         return smaDeliveryTime;
     }
@@ -138,35 +250,75 @@ public class NauticalWarningEntity {
         this.smaDeliveryTime = smaDeliveryTime;
     }
 
+    public String getValidationError() {
+        return validationError;
+    }
+
+    public void setValidationError(String validationError) {
+        this.validationError = validationError;
+    }
+
+    public LocalDateTime getActivationTime() {
+        return activationTime;
+    }
+
+    public void setActivationTime(LocalDateTime activationTime) {
+        this.activationTime = activationTime;
+    }
+
+    public S124WarningParameters getS124Parameters() {
+        return s124Parameters;
+    }
+
+    public void setS124Parameters(S124WarningParameters s124Parameters) {
+        this.s124Parameters = s124Parameters;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         NauticalWarningEntity that = (NauticalWarningEntity) o;
         return id == that.id &&
+                Objects.equals(source, that.source) &&
                 Objects.equals(jsonDocument, that.jsonDocument) &&
                 Objects.equals(s124Document, that.s124Document) &&
                 Objects.equals(createdTime, that.createdTime) &&
                 Objects.equals(updatedTime, that.updatedTime) &&
                 Objects.equals(expiredTime, that.expiredTime) &&
-                Objects.equals(smaDeliveryTime, that.smaDeliveryTime);
+                Objects.equals(publishedTime, that.publishedTime) &&
+                Objects.equals(firstSeenTime, that.firstSeenTime) &&
+                Objects.equals(renderedTime, that.renderedTime) &&
+                Objects.equals(persistedTime, that.persistedTime) &&
+                Objects.equals(smaDeliveryTime, that.smaDeliveryTime) &&
+                Objects.equals(validationError, that.validationError) &&
+                Objects.equals(activationTime, that.activationTime) &&
+                Objects.equals(s124Parameters, that.s124Parameters);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, jsonDocument, s124Document, createdTime, updatedTime, expiredTime, smaDeliveryTime);
+        return Objects.hash(id, source, jsonDocument, s124Document, createdTime, updatedTime, expiredTime, publishedTime, firstSeenTime, renderedTime, persistedTime, smaDeliveryTime, validationError, activationTime, s124Parameters);
     }
 
     @Override
     public String toString() {
         return "NauticalWarningEntity{" +
                 "id=" + id +
+                ", source='" + source + '\'' +
                 ", jsonDocument='" + jsonDocument + '\'' +
                 ", s124Document='" + s124Document + '\'' +
                 ", createdTime=" + createdTime +
                 ", updatedTime=" + updatedTime +
                 ", expiredTime=" + expiredTime +
+                ", publishedTime=" + publishedTime +
+                ", firstSeenTime=" + firstSeenTime +
+                ", renderedTime=" + renderedTime +
+                ", persistedTime=" + persistedTime +
                 ", smaDeliveryTime=" + smaDeliveryTime +
+                ", validationError='" + validationError + '\'' +
+                ", activationTime=" + activationTime +
+                ", s124Parameters=" + s124Parameters +
                 '}';
     }
 }
@@ -0,0 +1,52 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Query building blocks for filtering nautical warnings. Each of these is backed by an
+ * indexed column, and they can be freely combined with Specification.and().
+ */
+public class NauticalWarningSpecifications {
+
+    private NauticalWarningSpecifications() { throw new IllegalStateException("Utility class"); }
+
+    public static Specification<NauticalWarningEntity> hasStatus(WarningStatus status) {
+        switch (status) {
+            case EXPIRED:
+                return (root, query, cb) -> cb.isNotNull(root.get("expiredTime"));
+            case ACTIVE:
+                return (root, query, cb) -> cb.isNull(root.get("expiredTime"));
+            default:
+                throw new IllegalArgumentException("Expected either EXPIRED or ACTIVE for status");
+        }
+    }
+
+    public static Specification<NauticalWarningEntity> inGeneralArea(String generalArea) {
+        return (root, query, cb) -> cb.equal(root.get("s124Parameters").get("generalArea"), generalArea);
+    }
+
+    public static Specification<NauticalWarningEntity> ofWarningType(String typeOfWarning) {
+        return (root, query, cb) -> cb.equal(root.get("s124Parameters").get("typeOfWarning"), typeOfWarning);
+    }
+
+    public static Specification<NauticalWarningEntity> withWarningNumber(String warningNumber) {
+        return (root, query, cb) -> cb.equal(root.get("s124Parameters").get("warningNumber"), warningNumber);
+    }
+
+    /**
+     * Warnings whose validity window contains given moment: validity has started,
+     * and warning has not been expired yet at that moment.
+     *
+     * @param moment UTC timestamp
+     * @return
+     */
+    public static Specification<NauticalWarningEntity> validAt(LocalDateTime moment) {
+        return (root, query, cb) -> cb.and(
+                cb.lessThanOrEqualTo(root.get("s124Parameters").get("validityStartTime"), moment),
+                cb.or(
+                        cb.isNull(root.get("expiredTime")),
+                        cb.greaterThan(root.get("expiredTime"), moment)));
+    }
+}
@@ -1,14 +1,27 @@
 package fi.liikennevirasto.winvis.nauticalwarnings;
 
 import fi.liikennevirasto.winvis.audit.Audit;
+import fi.liikennevirasto.winvis.common.SharedHttpClient;
 import fi.liikennevirasto.winvis.common.Urls;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Provides access to imported and s124-converted digitraffic nautical warnings
@@ -17,11 +30,33 @@ import java.util.List;
 @RequestMapping(Urls.UI_API + "nautical-warnings")
 public class NauticalWarningsController {
 
+    private static final int MAX_PAGE_SIZE = 200;
+
     private NauticalWarningsService nauticalWarningsService;
+    private SharedHttpClient httpClient;
+    private DeliveryDispatcher deliveryDispatcher;
+    private NauticalWarningsWarmUp warmUp;
+    private LatencyHistograms latencyHistograms;
+    private FeatureQuarantine featureQuarantine;
+    private RouteWarningIndex routeWarningIndex;
+    private ForeignWarningsService foreignWarningsService;
+    private WarningHistory warningHistory;
 
     @Autowired
-    public NauticalWarningsController(NauticalWarningsService nauticalWarningsService) {
+    public NauticalWarningsController(NauticalWarningsService nauticalWarningsService, SharedHttpClient httpClient,
+                                      DeliveryDispatcher deliveryDispatcher, NauticalWarningsWarmUp warmUp,
+                                      LatencyHistograms latencyHistograms, FeatureQuarantine featureQuarantine,
+                                      RouteWarningIndex routeWarningIndex, ForeignWarningsService foreignWarningsService,
+                                      WarningHistory warningHistory) {
         this.nauticalWarningsService = nauticalWarningsService;
+        this.httpClient = httpClient;
+        this.deliveryDispatcher = deliveryDispatcher;
+        this.warmUp = warmUp;
+        this.latencyHistograms = latencyHistograms;
+        this.featureQuarantine = featureQuarantine;
+        this.routeWarningIndex = routeWarningIndex;
+        this.foreignWarningsService = foreignWarningsService;
+        this.warningHistory = warningHistory;
     }
 
 
@@ -39,4 +74,145 @@ public class NauticalWarningsController {
 
     }
 
+    /**
+     * Filter warnings by any combination of status, general area, type of warning, warning number
+     * and validity moment (UTC, ISO format). Results are paged, newest first, at most 200 warnings per page.
+     */
+    @Audit
+    @RequestMapping(method = RequestMethod.GET, produces = "application/json")
+    public Page<NauticalWarningEntity> findWarnings(
+            @RequestParam(value = "status", required = false) WarningStatus status,
+            @RequestParam(value = "area", required = false) String generalArea,
+            @RequestParam(value = "type", required = false) String typeOfWarning,
+            @RequestParam(value = "number", required = false) String warningNumber,
+            @RequestParam(value = "validAt", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime validAt,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "50") int size) {
+        var pageable = PageRequest.of(
+                page < 0 ? 0 : page,
+                Math.min(Math.max(size, 1), MAX_PAGE_SIZE),
+                Sort.by(Sort.Direction.DESC, "createdTime"));
+        return nauticalWarningsService.findWarnings(status, generalArea, typeOfWarning, warningNumber, validAt, pageable);
+    }
+
+    /**
+     * Readiness of nautical warnings: 200 once startup warm-up has finished, 503 until then
+     */
+    @RequestMapping(method = RequestMethod.GET, produces = "application/json", path = "ready")
+    public ResponseEntity<Map<String, Boolean>> getReadiness() {
+        var ready = warmUp.isReady();
+        return ResponseEntity.status(ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("ready", ready));
+    }
+
+    /**
+     * Request metrics of Digitraffic and SMA integrations, per host
+     */
+    @Audit
+    @RequestMapping(method = RequestMethod.GET, produces = "application/json", path = "metrics/http")
+    public Collection<SharedHttpClient.HostMetrics> getHttpMetrics() {
+        return httpClient.getHostMetrics().values();
+    }
+
+    /**
+     * Delivery status of given warning to every delivery sink
+     */
+    @Audit
+    @RequestMapping(method = RequestMethod.GET, produces = "application/json", path = "{id}/deliveries")
+    public List<WarningDeliveryEntity> getDeliveries(@PathVariable("id") long warningId) {
+        return deliveryDispatcher.getDeliveries(warningId);
+    }
+
+    /**
+     * Propagation timeline of given warning, from publishing in its source to every delivery attempt
+     */
+    @Audit
+    @RequestMapping(method = RequestMethod.GET, produces = "application/json", path = "{id}/timeline")
+    public ResponseEntity<WarningTimeline> getTimeline(@PathVariable("id") long warningId) {
+        return nauticalWarningsService.getTimeline(warningId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Latency histograms of warning propagation stages since startup
+     */
+    @Audit
+    @RequestMapping(method = RequestMethod.GET, produces = "application/json", path = "metrics/latency")
+    public List<LatencyHistograms.Snapshot> getLatencyHistograms() {
+        return latencyHistograms.getSnapshots();
+    }
+
+    /**
+     * Warning features that failed conversion, most recent failure first
+     */
+    @Audit
+    @RequestMapping(method = RequestMethod.GET, produces = "application/json", path = "quarantine")
+    public List<QuarantinedFeatureEntity> getQuarantinedFeatures() {
+        return featureQuarantine.getQuarantinedFeatures();
+    }
+
+    /**
+     * Number of quarantined warning features by source, and quarantine events since startup
+     */
+    @Audit
+    @RequestMapping(method = RequestMethod.GET, produces = "application/json", path = "quarantine/counts")
+    public FeatureQuarantine.Counts getQuarantineCounts() {
+        return featureQuarantine.getCounts();
+    }
+
+    /**
+     * Number of warnings waiting in delivery queue of each sink
+     */
+    @Audit
+    @RequestMapping(method = RequestMethod.GET, produces = "application/json", path = "deliveries/queues")
+    public Map<String, Integer> getDeliveryQueueSizes() {
+        return deliveryDispatcher.getQueueSizes();
+    }
+
+    /**
+     * Active warnings along RTZ route given as request body, leg by leg. Corridor extends given distance
+     * in meters to both sides of each leg, by default nautical-warnings.route-query.corridor-half-width-meters.
+     * Corridor out of range gives 400.
+     */
+    @Audit
+    @RequestMapping(method = RequestMethod.POST, produces = "application/json", path = "route")
+    public ResponseEntity<RouteWarnings> findWarningsAlongRoute(@RequestBody byte[] rtz,
+                                                                @RequestParam(value = "corridor", required = false) Double corridorHalfWidthMeters) {
+        var route = RtzRoute.read(new ByteArrayInputStream(rtz));
+        try {
+            return ResponseEntity.ok(routeWarningIndex.findWarnings(route, corridorHalfWidthMeters));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Active features of S-124 datasets of neighbouring services, of all datasets or of given dataset only
+     */
+    @Audit
+    @RequestMapping(method = RequestMethod.GET, produces = "application/json", path = "foreign")
+    public List<ForeignWarningEntity> getForeignWarnings(@RequestParam(value = "source", required = false) String source) {
+        return foreignWarningsService.getActiveWarnings(source);
+    }
+
+    /**
+     * Every rendered version of given warning, oldest first
+     */
+    @Audit
+    @RequestMapping(method = RequestMethod.GET, produces = "application/json", path = "{id}/history")
+    public List<WarningVersion> getHistory(@PathVariable("id") long warningId) {
+        return warningHistory.getVersions(warningId);
+    }
+
+    /**
+     * Version of each warning that was in force at given moment (UTC, ISO format)
+     */
+    @Audit
+    @RequestMapping(method = RequestMethod.GET, produces = "application/json", path = "history")
+    public List<WarningVersion> getInForceAt(@RequestParam("at") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return warningHistory.getInForceAt(at);
+    }
+
 }
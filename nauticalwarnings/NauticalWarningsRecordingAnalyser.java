@@ -0,0 +1,354 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summarises a flight recording made with nautical-warnings.jfc into per-stage hotspots, and attributes
+ * GC pauses and allocation to individual warnings, without opening the recording in Mission Control:
+ * <pre>
+ *     java NauticalWarningsRecordingAnalyser recording.jfr [number of top warnings, default 10]
+ * </pre>
+ * Prints
+ * <ul>
+ *     <li>every stage sorted by total time: poll phases, area matching and rendering of conversions, and
+ *     deliveries of each sink, with count and duration percentiles</li>
+ *     <li>for poll, conversion and delivery events, pauses of GCs overlapping the events, and bytes allocated
+ *     by the thread of the event while it lasted. Poll allocation does not include conversions, which run in
+ *     the conversion pool.</li>
+ *     <li>slowest conversions and conversions that allocated most, with their geometry sizes</li>
+ *     <li>failed deliveries by sink and HTTP status</li>
+ * </ul>
+ * Allocation is taken from allocation samples on JDK 16 and later, and from TLAB events on JDK 11.
+ */
+public class NauticalWarningsRecordingAnalyser {
+
+    private static final String GARBAGE_COLLECTION = "jdk.GarbageCollection";
+    private static final String ALLOCATION_SAMPLE = "jdk.ObjectAllocationSample";
+    private static final String ALLOCATION_IN_NEW_TLAB = "jdk.ObjectAllocationInNewTLAB";
+    private static final String ALLOCATION_OUTSIDE_TLAB = "jdk.ObjectAllocationOutsideTLAB";
+
+    private final Map<String, Stage> stages = new HashMap<>();
+    private final List<Interval> gcPauses = new ArrayList<>();
+    private final Map<Long, Allocations> sampledAllocations = new HashMap<>();
+    private final Map<Long, Allocations> tlabAllocations = new HashMap<>();
+    private final List<RecordedEvent> polls = new ArrayList<>();
+    private final List<RecordedEvent> conversions = new ArrayList<>();
+    private final List<RecordedEvent> deliveries = new ArrayList<>();
+
+    private NauticalWarningsRecordingAnalyser() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: NauticalWarningsRecordingAnalyser <recording.jfr> [number of top warnings]");
+            System.exit(1);
+        }
+        var analyser = new NauticalWarningsRecordingAnalyser();
+        analyser.read(Paths.get(args[0]));
+        analyser.print(args.length == 2 ? Integer.parseInt(args[1]) : 10);
+    }
+
+    private void read(Path recording) throws IOException {
+        try (var file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                var event = file.readEvent();
+                switch (event.getEventType().getName()) {
+                    case PollCycleEvent.NAME:
+                        polls.add(event);
+                        break;
+                    case FeatureConversionEvent.NAME:
+                        conversions.add(event);
+                        break;
+                    case DeliveryEvent.NAME:
+                        deliveries.add(event);
+                        break;
+                    case GARBAGE_COLLECTION:
+                        gcPauses.add(new Interval(nanos(event.getStartTime()), nanos(event.getEndTime()),
+                                event.getDuration("sumOfPauses").toNanos()));
+                        break;
+                    case ALLOCATION_SAMPLE:
+                        addAllocation(sampledAllocations, event, event.getLong("weight"));
+                        break;
+                    case ALLOCATION_IN_NEW_TLAB:
+                        addAllocation(tlabAllocations, event, event.getLong("tlabSize"));
+                        break;
+                    case ALLOCATION_OUTSIDE_TLAB:
+                        addAllocation(tlabAllocations, event, event.getLong("allocationSize"));
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        gcPauses.sort(Comparator.comparingLong(Interval::getStart));
+        sampledAllocations.values().forEach(Allocations::index);
+        tlabAllocations.values().forEach(Allocations::index);
+
+        for (var poll : polls) {
+            addEventStage("poll", poll);
+            stage("poll:fetch").add(poll.getDuration("fetchDuration").toNanos());
+            stage("poll:conversion").add(poll.getDuration("conversionDuration").toNanos());
+            stage("poll:validation").add(poll.getDuration("validationDuration").toNanos());
+            stage("poll:transaction").add(poll.getDuration("transactionDuration").toNanos());
+        }
+        for (var conversion : conversions) {
+            addEventStage("conversion", conversion);
+            stage("conversion:area-match").add(conversion.getDuration("areaMatchDuration").toNanos());
+            stage("conversion:render").add(conversion.getDuration("renderDuration").toNanos());
+        }
+        for (var delivery : deliveries) {
+            addEventStage("delivery:" + delivery.getString("sink"), delivery);
+        }
+    }
+
+    private void addEventStage(String name, RecordedEvent event) {
+        var stage = stage(name);
+        stage.add(event.getDuration().toNanos());
+        stage.gcPauseNanos += gcPauseDuring(event);
+        stage.allocatedBytes += allocatedDuring(event);
+    }
+
+    private Stage stage(String name) {
+        return stages.computeIfAbsent(name, Stage::new);
+    }
+
+    private void print(int top) {
+        System.out.printf("%d polls, %d conversions, %d deliveries, %d garbage collections%n%n",
+                polls.size(), conversions.size(), deliveries.size(), gcPauses.size());
+
+        System.out.println("Stages by total time (ms)");
+        System.out.printf("%-28s %8s %10s %8s %8s %8s %8s %10s %12s%n",
+                "stage", "count", "total", "mean", "p50", "p95", "max", "gc pause", "allocated");
+        var sortedStages = new ArrayList<>(stages.values());
+        sortedStages.sort(Comparator.comparingLong(Stage::getTotalNanos).reversed());
+        for (var stage : sortedStages) {
+            var isEventStage = stage.name.indexOf(':') < 0 || stage.name.startsWith("delivery:");
+            System.out.printf("%-28s %8d %10.1f %8.2f %8.2f %8.2f %8.2f %10s %12s%n",
+                    stage.name, stage.count, millis(stage.getTotalNanos()), millis(stage.getTotalNanos() / Math.max(1, stage.count)),
+                    millis(stage.percentile(0.50)), millis(stage.percentile(0.95)), millis(stage.percentile(1.0)),
+                    isEventStage ? String.format("%.1f", millis(stage.gcPauseNanos)) : "",
+                    isEventStage ? formatBytes(stage.allocatedBytes) : "");
+        }
+
+        printConversions("Slowest conversions", top,
+                Comparator.comparingLong((RecordedEvent e) -> e.getDuration().toNanos()).reversed());
+        printConversions("Conversions that allocated most", top,
+                Comparator.comparingLong(this::allocatedDuring).reversed());
+
+        var failures = new TreeMap<String, Integer>();
+        deliveries.stream()
+                .filter(d -> !d.getBoolean("succeeded"))
+                .forEach(d -> failures.merge(d.getString("sink") + " HTTP " + d.getInt("httpStatus"), 1, Integer::sum));
+        System.out.printf("%nFailed deliveries%n");
+        if (failures.isEmpty()) {
+            System.out.println("none");
+        }
+        failures.forEach((key, count) -> System.out.printf("%-28s %8d%n", key, count));
+    }
+
+    private void printConversions(String title, int top, Comparator<RecordedEvent> order) {
+        System.out.printf("%n%s%n", title);
+        System.out.printf("%-14s %-12s %-10s %10s %10s %10s %8s %8s %8s %12s %10s%n",
+                "warning", "source", "geometry", "vertices", "encoded", "document", "total", "area", "render", "allocated", "gc pause");
+        conversions.stream()
+                .sorted(order)
+                .limit(top)
+                .forEach(e -> System.out.printf("%-14d %-12s %-10s %10d %10d %10s %8.2f %8.2f %8.2f %12s %10.1f%s%n",
+                        e.getLong("warningId"), e.getString("source"), e.getString("geometryType"),
+                        e.getInt("originalVertexCount"), e.getInt("vertexCount"), formatBytes(e.getLong("documentLength")),
+                        millis(e.getDuration().toNanos()), millis(e.getDuration("areaMatchDuration").toNanos()),
+                        millis(e.getDuration("renderDuration").toNanos()), formatBytes(allocatedDuring(e)),
+                        millis(gcPauseDuring(e)), e.getString("error") != null ? " failed: " + e.getString("error") : ""));
+    }
+
+    /**
+     * Sum of pauses of garbage collections that overlap given event
+     */
+    private long gcPauseDuring(RecordedEvent event) {
+        var start = nanos(event.getStartTime());
+        var end = nanos(event.getEndTime());
+        var pause = 0L;
+        for (var gc : gcPauses) {
+            if (gc.start > end) {
+                break;
+            }
+            if (gc.end >= start) {
+                pause += gc.value;
+            }
+        }
+        return pause;
+    }
+
+    /**
+     * Bytes allocated by the thread of given event while it lasted
+     */
+    private long allocatedDuring(RecordedEvent event) {
+        if (event.getThread() == null) {
+            return 0;
+        }
+        var allocations = (sampledAllocations.isEmpty() ? tlabAllocations : sampledAllocations)
+                .get(event.getThread().getJavaThreadId());
+        return allocations == null ? 0 : allocations.between(nanos(event.getStartTime()), nanos(event.getEndTime()));
+    }
+
+    private static void addAllocation(Map<Long, Allocations> allocations, RecordedEvent event, long bytes) {
+        if (event.getThread() != null) {
+            allocations.computeIfAbsent(event.getThread().getJavaThreadId(), id -> new Allocations())
+                    .add(nanos(event.getStartTime()), bytes);
+        }
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1000000000L + instant.getNano();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f kB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static final class Interval {
+        private final long start;
+        private final long end;
+        private final long value;
+
+        private Interval(long start, long end, long value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+
+        private long getStart() {
+            return start;
+        }
+    }
+
+    private static final class Stage {
+        private final String name;
+        private long[] durations = new long[16];
+        private int count;
+        private boolean sorted;
+        private long gcPauseNanos;
+        private long allocatedBytes;
+
+        private Stage(String name) {
+            this.name = name;
+        }
+
+        private void add(long nanos) {
+            if (count == durations.length) {
+                durations = Arrays.copyOf(durations, count * 2);
+            }
+            durations[count++] = nanos;
+            sorted = false;
+        }
+
+        private long getTotalNanos() {
+            var total = 0L;
+            for (int i = 0; i < count; i++) {
+                total += durations[i];
+            }
+            return total;
+        }
+
+        private long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(durations, 0, count);
+                sorted = true;
+            }
+            var index = (int) Math.ceil(percentile * count) - 1;
+            return durations[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+
+    /**
+     * Allocations of single thread, indexed as cumulative bytes by time for range sums
+     */
+    private static final class Allocations {
+        private long[] times = new long[64];
+        private long[] cumulativeBytes = new long[64];
+        private int count;
+
+        private void add(long time, long bytes) {
+            if (count == times.length) {
+                times = Arrays.copyOf(times, count * 2);
+                cumulativeBytes = Arrays.copyOf(cumulativeBytes, count * 2);
+            }
+            times[count] = time;
+            cumulativeBytes[count] = bytes;
+            count++;
+        }
+
+        /**
+         * Sort by time, as recording chunks do not guarantee order, and accumulate bytes
+         */
+        private void index() {
+            var order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> times[i]));
+            var sortedTimes = new long[count];
+            var cumulative = new long[count];
+            var total = 0L;
+            for (int i = 0; i < count; i++) {
+                sortedTimes[i] = times[order[i]];
+                total += cumulativeBytes[order[i]];
+                cumulative[i] = total;
+            }
+            times = sortedTimes;
+            cumulativeBytes = cumulative;
+        }
+
+        private long between(long start, long end) {
+            var from = lowerBound(start);
+            var to = lowerBound(end + 1);
+            if (to == 0 || from >= to) {
+                return 0;
+            }
+            return cumulativeBytes[to - 1] - (from == 0 ? 0 : cumulativeBytes[from - 1]);
+        }
+
+        /**
+         * Index of first allocation at or after given time
+         */
+        private int lowerBound(long time) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (times[middle] < time) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package fi.liikennevirasto.winvis.nauticalwarnings;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
-public interface NauticalWarningsRepository extends JpaRepository<NauticalWarningEntity, Long> {
+public interface NauticalWarningsRepository extends JpaRepository<NauticalWarningEntity, Long>,
+        JpaSpecificationExecutor<NauticalWarningEntity> {
 
     @Modifying
     void deleteByExpiredTimeBefore(LocalDateTime expiryDate);
@@ -15,6 +18,23 @@ public interface NauticalWarningsRepository extends JpaRepository<NauticalWarnin
 
     List<NauticalWarningEntity> findAllByExpiredTimeIsNotNull();
 
+    /**
+     * Active warnings whose validity has started
+     */
+    List<NauticalWarningEntity> findAllByExpiredTimeIsNullAndActivationTimeIsNull();
+
+    List<NauticalWarningEntity> findAllBySourceAndExpiredTimeIsNull(String source);
+
+    List<NauticalWarningEntity> findAllBySourceIsNullAndExpiredTimeIsNull();
+
     List<NauticalWarningEntity> findAllBySmaDeliveryTimeIsNull();
 
+    /**
+     * Id, source, activation time and validity end time of each active warning that has either,
+     * without loading the documents
+     */
+    @Query("select w.id, w.source, w.activationTime, w.s124Parameters.validityEndTime from NauticalWarningEntity w " +
+            "where w.expiredTime is null and (w.activationTime is not null or w.s124Parameters.validityEndTime is not null)")
+    List<Object[]> findValidityTimers();
+
 }
@@ -9,7 +9,20 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Polls every warning source on its own interval. Each source has its own thread, so a slow or failing
+ * source does not delay the others, and an error in one poll only skips that poll of that source.
+ * Polling starts only once startup warm-up has finished. Foreign S-124 datasets are read the same way,
+ * each on its own interval and thread, but without waiting for warm-up, since they are not converted.
+ * Validity timers, which activate and expire warnings at their validity times, run on a thread of their own
+ * once warm-up has finished, so only on nodes that poll.
+ */
 @Service
 @ConditionalOnProperty(name = "nautical-warnings.poller.enabled", havingValue = "true")
 public class NauticalWarningsScheduler {
@@ -19,10 +32,20 @@ public class NauticalWarningsScheduler {
 
 
     private NauticalWarningsService service;
+    private WarningSources warningSources;
+    private NauticalWarningsWarmUp warmUp;
+    private ForeignWarningsService foreignWarningsService;
+    private ForeignDatasets foreignDatasets;
+    private ScheduledExecutorService sourcePollers;
 
     @Autowired
-    public NauticalWarningsScheduler(NauticalWarningsService service) {
+    public NauticalWarningsScheduler(NauticalWarningsService service, WarningSources warningSources, NauticalWarningsWarmUp warmUp,
+                                     ForeignWarningsService foreignWarningsService, ForeignDatasets foreignDatasets) {
         this.service = service;
+        this.warningSources = warningSources;
+        this.warmUp = warmUp;
+        this.foreignWarningsService = foreignWarningsService;
+        this.foreignDatasets = foreignDatasets;
     }
 
     @Value("${nautical-warnings.poller.frequency}")
@@ -30,14 +53,71 @@ public class NauticalWarningsScheduler {
 
     @PostConstruct
     public void init() {
-        logger.info(String.format("Marine Warnings system initialized, polling every %d minutes", pollingFrequency / 60000));
+        var sources = warningSources.getSources();
+        var threadNumber = new AtomicInteger();
+        var datasets = foreignDatasets.getDatasets();
+        sourcePollers = Executors.newScheduledThreadPool(sources.size() + datasets.size() + 1, runnable -> {
+            var thread = new Thread(runnable, "nautical-warnings-source-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        warmUp.whenReady().thenRun(() -> sources.forEach(source -> sourcePollers.scheduleWithFixedDelay(() -> pollSource(source),
+                DEFAULT_INITIAL_DELAY, source.getPollInterval().toMillis(), TimeUnit.MILLISECONDS)));
+        warmUp.whenReady().thenRun(() -> sourcePollers.scheduleWithFixedDelay(this::processValidityTimers,
+                0, service.getValidityTimerTickMillis(), TimeUnit.MILLISECONDS));
+        datasets.forEach(dataset -> sourcePollers.scheduleWithFixedDelay(() -> readForeignDataset(dataset),
+                DEFAULT_INITIAL_DELAY, dataset.getPollInterval().toMillis(), TimeUnit.MILLISECONDS));
+        logger.info(String.format("Marine Warnings system initialized, polling %d sources and %d foreign datasets, housekeeping every %d minutes",
+                sources.size(), datasets.size(), pollingFrequency / 60000));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        sourcePollers.shutdownNow();
+    }
+
+    /**
+     * Any exception must be caught here, since an exception thrown from a scheduled
+     * task would cancel all further polls of the source.
+     *
+     * @param source
+     */
+    private void pollSource(WarningSource source) {
+        try {
+            service.pollForWarnings(source);
+        } catch (Exception e) {
+            logger.error("Polling nautical warnings from source {} failed, retrying in {}", source.getName(), source.getPollInterval(), e);
+        }
+    }
+
+    /**
+     * Like pollSource, any exception must be caught here
+     */
+    private void processValidityTimers() {
+        try {
+            service.processValidityTimers();
+        } catch (Exception e) {
+            logger.error("Processing validity timers of nautical warnings failed, retrying on next tick", e);
+        }
+    }
+
+    /**
+     * Like pollSource, any exception must be caught here
+     *
+     * @param dataset
+     */
+    private void readForeignDataset(ForeignDatasets.Dataset dataset) {
+        try {
+            foreignWarningsService.ingest(dataset);
+        } catch (Exception e) {
+            logger.error("Reading foreign S-124 dataset {} failed, retrying in {}", dataset.getName(), dataset.getPollInterval(), e);
+        }
     }
 
     @Scheduled(initialDelay = DEFAULT_INITIAL_DELAY, fixedDelayString = "${nautical-warnings.poller.frequency}")
     public void fetchMarineWarnings() {
         service.deleteOldExpired();
-        service.pollForWarnings();
-        service.retryFailedSmaNotifications();
+        foreignWarningsService.deleteOldExpired();
     }
 
 }
@@ -11,19 +11,35 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.ui.freemarker.FreeMarkerTemplateUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.transaction.Transactional;
 import java.io.IOException;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.StreamSupport;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
 
+import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 
 @Service
 public class NauticalWarningsService {
@@ -36,77 +52,543 @@ public class NauticalWarningsService {
 
     private final NauticalWarningsRepository warningRepository;
     private final Configuration freemakerConfiguration;
-    private final DigitrafficClient digitrafficClient;
-    private final SMAClient smaClient;
+    private final DeliveryDispatcher deliveryDispatcher;
+    private final S124SchemaValidator schemaValidator;
+    private final GeoLocationMatcher geoLocationMatcher;
+    private final LatencyHistograms latencyHistograms;
+    private final GeometryReducer geometryReducer;
+    private final FeatureQuarantine featureQuarantine;
+    private final TransactionTemplate transactionTemplate;
+    private final RouteWarningIndex routeWarningIndex;
+    private final WarningHistory warningHistory;
+    private final ExchangeSetPublisher exchangeSetPublisher;
 
-    @Value("${nautical-warnings.sma.enabled}")
-    private boolean smaIntegrationEnabled;
+    @Value("${nautical-warnings.conversion.parallelism:0}")
+    private int conversionParallelism;
+    @Value("${nautical-warnings.validity-timers.tick-millis:1000}")
+    private long validityTimerTickMillis;
+
+    private ForkJoinPool conversionPool;
+
+    /**
+     * Activation and expiry times of active warnings, loaded from database once and then kept up to date as
+     * warnings are polled. Polls and validity timers lock the source whose warnings they change.
+     */
+    private TimerWheel<ValidityTimer> validityTimers;
+    private volatile boolean validityTimersLoaded;
+    private final Map<String, ReentrantLock> sourceLocks = new ConcurrentHashMap<>();
 
 
     @Autowired
-    public NauticalWarningsService(NauticalWarningsRepository warningRepository, Configuration freemakerConfiguration, DigitrafficClient digitrafficClient, SMAClient smaClient) {
+    public NauticalWarningsService(NauticalWarningsRepository warningRepository, Configuration freemakerConfiguration, DeliveryDispatcher deliveryDispatcher, S124SchemaValidator schemaValidator,
+                                   GeoLocationMatcher geoLocationMatcher, LatencyHistograms latencyHistograms,
+                                   GeometryReducer geometryReducer, FeatureQuarantine featureQuarantine,
+                                   PlatformTransactionManager transactionManager, RouteWarningIndex routeWarningIndex,
+                                   WarningHistory warningHistory, ExchangeSetPublisher exchangeSetPublisher) {
         this.warningRepository = warningRepository;
         this.freemakerConfiguration = freemakerConfiguration;
-        this.digitrafficClient = digitrafficClient;
-        this.smaClient = smaClient;
+        this.deliveryDispatcher = deliveryDispatcher;
+        this.schemaValidator = schemaValidator;
+        this.geoLocationMatcher = geoLocationMatcher;
+        this.latencyHistograms = latencyHistograms;
+        this.geometryReducer = geometryReducer;
+        this.featureQuarantine = featureQuarantine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.routeWarningIndex = routeWarningIndex;
+        this.warningHistory = warningHistory;
+        this.exchangeSetPublisher = exchangeSetPublisher;
     }
 
-    @Transactional
-    public void pollForWarnings() {
-        logger.info("Polling for Digitraffic nautical warnings warnings");
-        List<NauticalWarningEntity> oldWarnings = warningRepository.findAllByExpiredTimeIsNull();
-        logger.info("Got {} old warnings from DB.", oldWarnings.size());
-        var features = digitrafficClient.fetchWarnings();
-        var newWarnings = StreamSupport.stream(features.spliterator(), false)
+    @PostConstruct
+    public void init() {
+        var parallelism = conversionParallelism > 0 ? conversionParallelism : Runtime.getRuntime().availableProcessors();
+        this.conversionPool = new ForkJoinPool(parallelism, pool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("nautical-warnings-conversion-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        logger.info("Init: Converting nautical warnings with parallelism of {}", parallelism);
+        this.validityTimers = new TimerWheel<>(validityTimerTickMillis, System.currentTimeMillis());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        conversionPool.shutdownNow();
+    }
+
+    /**
+     * Poll given source for warnings, and compare them to active warnings of the same source in database.
+     * Warnings of other sources are not touched, so sources can be polled independently of each other.
+     * <p>
+     * A single malformed warning never fails the whole poll: features without a valid id are dropped,
+     * features that fail conversion are quarantined, and expired warnings that fail to render are left
+     * active until the next poll.
+     * <p>
+     * Poll is done in three phases, so that no database connection is held during network I/O:
+     * <ol>
+     *     <li>Fetching from the source, area matching, rendering and validation run without transaction.
+     *     Old warnings and quarantine entries are read in short queries and changed while detached.</li>
+     *     <li>The diff is written in one short transaction: new and expired warnings, quarantine changes and
+     *     pending delivery rows.</li>
+     *     <li>After commit, DeliveryDispatcher delivers warnings in sink workers, and records each outcome
+     *     in its own short transaction. Route index and exchange set are refreshed if anything changed.</li>
+     * </ol>
+     * Duration of the write transaction is recorded as latency stage poll-transaction. Each source is polled
+     * by a single thread. Only validity timers modify active warnings besides polls, so warnings to expire are
+     * read again while the source is locked against them, and detached changes are safe to merge.
+     * <p>
+     * Warnings whose validity has not started yet are stored, but delivered only when it starts, and warnings
+     * are expired at their validity end without waiting for the next poll, see processValidityTimers.
+     * <p>
+     * Each poll is recorded as PollCycleEvent, and each conversion as FeatureConversionEvent, for flight recorder.
+     *
+     * @param source
+     */
+    public void pollForWarnings(WarningSource source) {
+        var event = new PollCycleEvent(source.getName());
+        event.begin();
+        try {
+            pollForWarnings(source, event);
+            event.completed = true;
+        } finally {
+            event.commit();
+        }
+    }
+
+    private void pollForWarnings(WarningSource source, PollCycleEvent event) {
+        logger.info("Polling for nautical warnings from source {}", source.getName());
+        List<NauticalWarningEntity> oldWarnings = new ArrayList<>(warningRepository.findAllBySourceAndExpiredTimeIsNull(source.getName()));
+        if (source.getNamespace() == 0) {
+            // Warnings stored before there were several sources came from Digitraffic with unchanged ids
+            oldWarnings.addAll(warningRepository.findAllBySourceIsNullAndExpiredTimeIsNull());
+        }
+        logger.info("Got {} old warnings of source {} from DB.", oldWarnings.size(), source.getName());
+        event.oldWarnings = oldWarnings.size();
+        var fetchBeginTime = System.nanoTime();
+        var fetchedFeatures = source.fetchWarnings();
+        event.fetchDuration = System.nanoTime() - fetchBeginTime;
+        var features = fetchedFeatures.stream()
+                .filter(f -> hasValidId(source, f))
                 .filter(this::filterOutNavigationalWarningsForFishermen)
-                .map(this::processGeoJsoNWarningForDatabase)
                 .collect(toList());
-        logger.info("Polled {} warnings from digitraffic API.", newWarnings.size());
+        event.fetched = fetchedFeatures.size();
+        event.filtered = fetchedFeatures.size() - features.size();
+        var firstSeenTime = ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+        logger.info("Polled {} warnings from source {}.", features.size(), source.getName());
 
         // Grab ids of all items that were in db so we can filter only new items
         var oldIdsList = oldWarnings.stream()
                 .map(NauticalWarningEntity::getId)
-                .collect(toList());
+                .collect(toSet());
 
-        // Grab ids of all items that were in set returned from Digitraffic API
-        var idsReturnedFromAPI = newWarnings.stream()
-                .map(NauticalWarningEntity::getId)
-                .collect(toList());
+        // Grab ids of all items that were in set returned from the source, in the id namespace of the source.
+        // This includes items that fail conversion, so they are not expired because of that.
+        var idsReturnedFromAPI = features.stream()
+                .map(f -> source.toWarningId(getFeatureId(f)))
+                .collect(toSet());
 
-        var newItemsList = newWarnings.stream()
-                .filter(w -> !oldIdsList.contains(w.getId()))
+        // Only items that are not yet in database need to be converted
+        // Features that failed conversion before are skipped until their content changes
+        var quarantinedFeatures = featureQuarantine.findBySource(source);
+        var newFeatures = features.stream()
+                .filter(f -> !oldIdsList.contains(source.toWarningId(getFeatureId(f))))
+                .filter(f -> !hasValidityEnded(f, firstSeenTime))
+                .filter(f -> !featureQuarantine.shouldSkip(quarantinedFeatures.get(source.toWarningId(getFeatureId(f))), f))
+                .collect(toList());
+        var conversionBeginTime = System.nanoTime();
+        var conversions = convertFeatures(source, newFeatures);
+        event.conversionDuration = System.nanoTime() - conversionBeginTime;
+        var newItemsList = conversions.stream()
+                .filter(c -> c.warning != null)
+                .map(c -> c.warning)
                 .collect(toList());
+        newItemsList.forEach(w -> w.setFirstSeenTime(firstSeenTime));
+        // Warnings that are not valid yet are delivered once their validity starts. Validity of warnings without
+        // start time given by the source starts at their conversion.
+        var convertedTime = ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+        newItemsList.stream()
+                .filter(w -> w.getS124Parameters().getValidityStartTime().isAfter(convertedTime))
+                .forEach(w -> w.setActivationTime(w.getS124Parameters().getValidityStartTime()));
+        event.converted = newFeatures.size();
+        event.conversionFailures = newFeatures.size() - newItemsList.size();
+        event.newItems = newItemsList.size();
         if (newItemsList.size() > 0) {
             logger.info("Got {} new items that were not yet in database. Adding them.",
                     newItemsList.size());
         }
 
-        // Grab all old warnings, that are not yet expired,
-        // but that are also not in new ids list,
-        // so we can mark them as expired
-        var expiredItemsList = oldWarnings.stream()
-                .filter(w -> w.getExpiredTime() == null)
-                .filter(w -> !idsReturnedFromAPI.contains(w.getId()))
-                .map(this::processExpiredWarning)
-                .collect(toList());
+        var expiredItemsList = new ArrayList<NauticalWarningEntity>();
+        var lock = sourceLock(source.getName());
+        lock.lock();
+        try {
+            // Grab all old warnings, that are not yet expired,
+            // but that are also not in new ids list,
+            // so we can mark them as expired. They are read again, since validity timers may have changed them.
+            // Documents before expiry are kept for version history.
+            var warningsToExpire = warningRepository.findAllById(oldWarnings.stream()
+                    .filter(w -> !idsReturnedFromAPI.contains(w.getId()))
+                    .map(NauticalWarningEntity::getId)
+                    .collect(toList())).stream()
+                    .filter(w -> w.getExpiredTime() == null)
+                    .collect(toList());
+            var previousDocuments = new HashMap<Long, String>();
+            warningsToExpire.forEach(w -> previousDocuments.put(w.getId(), w.getS124Document()));
+            var expiryTime = ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+            warningsToExpire.stream()
+                    .map(w -> expireWarning(source.getName(), w, expiryTime))
+                    .flatMap(Optional::stream)
+                    .forEach(expiredItemsList::add);
 
-        if (expiredItemsList.size() > 0) {
-            logger.info("Got {} items that were in the database but do not exist anymore in digitraffic API. Marking them as expired.",
-                    expiredItemsList.size());
-        }
+            if (expiredItemsList.size() > 0) {
+                logger.info("Got {} items that were in the database but do not exist anymore in source {}. Marking them as expired.",
+                        expiredItemsList.size(), source.getName());
+            }
+
+            event.expired = expiredItemsList.size();
+
+            // Invalid S124 documents are quarantined instead of being sent
+            var validationBeginTime = System.nanoTime();
+            var invalidItemsList = new ArrayList<NauticalWarningEntity>();
+            invalidItemsList.addAll(schemaValidator.validateAll(newItemsList));
+            invalidItemsList.addAll(schemaValidator.validateAll(expiredItemsList));
+            event.validationDuration = System.nanoTime() - validationBeginTime;
+            event.invalid = invalidItemsList.size();
+            if (invalidItemsList.size() > 0) {
+                logger.warn("Got {} items that failed S124 schema validation. They will not be delivered.",
+                        invalidItemsList.size());
+            }
 
-        // Notify interested parties
-        notifyNewItems(newItemsList);
-        notifyExpiredItems(expiredItemsList);
+            // Versions are compressed before the transaction, so it only inserts them. Versions of warnings
+            // whose validity has not started are written when they are activated.
+            var versions = new ArrayList<WarningVersionEntity>(warningHistory.newVersions(activated(newItemsList)));
+            versions.addAll(warningHistory.expiredVersions(expiredItemsList, previousDocuments));
 
-        warningRepository.saveAll(newItemsList);
-        warningRepository.saveAll(expiredItemsList);
+            // Write the diff in one short transaction. Interested parties are notified once it commits.
+            var transactionBeginTime = System.nanoTime();
+            transactionTemplate.execute(status -> {
+                updateQuarantine(source, quarantinedFeatures, conversions, idsReturnedFromAPI);
+                notifyNewItems(activated(withoutValidationErrors(newItemsList)));
+                notifyExpiredItems(activated(withoutValidationErrors(expiredItemsList)));
+
+                var persistedTime = ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+                newItemsList.forEach(w -> w.setPersistedTime(persistedTime));
+                warningRepository.saveAll(newItemsList);
+                warningRepository.saveAll(expiredItemsList);
+                warningHistory.save(versions);
+                return null;
+            });
+            event.transactionDuration = System.nanoTime() - transactionBeginTime;
+            latencyHistograms.record("poll-transaction", Duration.ofNanos(event.transactionDuration));
+        } finally {
+            lock.unlock();
+        }
+        recordLatencies(newItemsList);
+        scheduleValidityTimers(newItemsList);
+        if (newItemsList.size() > 0 || expiredItemsList.size() > 0) {
+            routeWarningIndex.refresh();
+            exchangeSetPublisher.publish();
+        }
 
         // Some logging to top it off
         logChangedItems(newItemsList, expiredItemsList);
 
     }
 
+    /**
+     * Activate warnings whose validity has started and expire warnings whose validity has ended since previous
+     * call, without waiting for the next poll of their source. Due timers are taken from the timer wheel, which
+     * is loaded from database on first call, so no table is scanned on each call.
+     * <p>
+     * Warnings are read again by id while their source is locked, so timers of warnings already expired by a
+     * poll are ignored. If changing warnings of a source fails, its timers are retried a minute later.
+     */
+    public void processValidityTimers() {
+        if (!validityTimersLoaded) {
+            loadValidityTimers();
+            validityTimersLoaded = true;
+        }
+        List<ValidityTimer> dueTimers;
+        synchronized (validityTimers) {
+            dueTimers = validityTimers.advance(System.currentTimeMillis());
+        }
+        if (dueTimers.isEmpty()) {
+            return;
+        }
+        var changed = false;
+        var dueTimersBySource = dueTimers.stream()
+                .collect(groupingBy(t -> t.source));
+        for (var entry : dueTimersBySource.entrySet()) {
+            try {
+                changed |= applyValidityTimers(entry.getKey(), entry.getValue().stream().map(t -> t.warningId).collect(toSet()));
+            } catch (RuntimeException e) {
+                logger.error("Could not activate or expire {} warnings of source {}, trying again in a minute",
+                        entry.getValue().size(), entry.getKey(), e);
+                var retryTime = System.currentTimeMillis() + Duration.ofMinutes(1).toMillis();
+                synchronized (validityTimers) {
+                    entry.getValue().forEach(t -> validityTimers.schedule(retryTime, t));
+                }
+            }
+        }
+        if (changed) {
+            routeWarningIndex.refresh();
+            exchangeSetPublisher.publish();
+        }
+    }
+
+    /**
+     * Activate and expire given warnings of given source, as far as they are due, and deliver them like a poll would.
+     * Warnings expired at their validity end get it as their expiry time.
+     *
+     * @param sourceName
+     * @param warningIds
+     * @return whether any warning was changed
+     */
+    private boolean applyValidityTimers(String sourceName, Set<Long> warningIds) {
+        var lock = sourceLock(sourceName);
+        lock.lock();
+        try {
+            var now = ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+            var warnings = warningRepository.findAllById(warningIds).stream()
+                    .filter(w -> w.getExpiredTime() == null)
+                    .collect(toList());
+            var warningsToExpire = warnings.stream()
+                    .filter(w -> w.getS124Parameters() != null && w.getS124Parameters().getValidityEndTime() != null)
+                    .filter(w -> !w.getS124Parameters().getValidityEndTime().isAfter(now))
+                    .collect(toList());
+            var warningsToActivate = warnings.stream()
+                    .filter(w -> w.getActivationTime() != null && !w.getActivationTime().isAfter(now))
+                    .filter(w -> !warningsToExpire.contains(w))
+                    .collect(toList());
+            if (warningsToExpire.isEmpty() && warningsToActivate.isEmpty()) {
+                return false;
+            }
+
+            var previousDocuments = new HashMap<Long, String>();
+            warningsToExpire.forEach(w -> previousDocuments.put(w.getId(), w.getS124Document()));
+            var expiredItemsList = warningsToExpire.stream()
+                    .map(w -> expireWarning(sourceName, w, w.getS124Parameters().getValidityEndTime()))
+                    .flatMap(Optional::stream)
+                    .collect(toList());
+            var invalidItemsList = schemaValidator.validateAll(expiredItemsList);
+            if (invalidItemsList.size() > 0) {
+                logger.warn("Got {} expired items that failed S124 schema validation. They will not be delivered.",
+                        invalidItemsList.size());
+            }
+            // Activation time is still set here, so activated versions are effective from it
+            var versions = new ArrayList<WarningVersionEntity>(warningHistory.newVersions(warningsToActivate));
+            versions.addAll(warningHistory.expiredVersions(expiredItemsList, previousDocuments));
+
+            transactionTemplate.execute(status -> {
+                notifyNewItems(withoutValidationErrors(warningsToActivate));
+                notifyExpiredItems(activated(withoutValidationErrors(expiredItemsList)));
+
+                warningsToActivate.forEach(w -> w.setActivationTime(null));
+                warningRepository.saveAll(warningsToActivate);
+                warningRepository.saveAll(expiredItemsList);
+                warningHistory.save(versions);
+                return null;
+            });
+            logger.info("Activated {} and expired {} warnings of source {} at their validity times",
+                    warningsToActivate.size(), expiredItemsList.size(), sourceName);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Schedule activation and validity end of given warnings, if they have either
+     *
+     * @param warnings
+     */
+    private void scheduleValidityTimers(List<NauticalWarningEntity> warnings) {
+        synchronized (validityTimers) {
+            for (var warning : warnings) {
+                scheduleValidityTimers(warning.getId(), warning.getSource(), warning.getActivationTime(),
+                        warning.getS124Parameters().getValidityEndTime());
+            }
+        }
+    }
+
+    private void scheduleValidityTimers(long warningId, String source, LocalDateTime activationTime, LocalDateTime validityEndTime) {
+        var timer = new ValidityTimer(warningId, source);
+        if (activationTime != null) {
+            validityTimers.schedule(activationTime.toInstant(ZoneOffset.UTC).toEpochMilli(), timer);
+        }
+        if (validityEndTime != null) {
+            validityTimers.schedule(validityEndTime.toInstant(ZoneOffset.UTC).toEpochMilli(), timer);
+        }
+    }
+
+    /**
+     * Schedule timers of active warnings in database, once at startup. Timers already due fire on first advance.
+     */
+    private void loadValidityTimers() {
+        var rows = warningRepository.findValidityTimers();
+        synchronized (validityTimers) {
+            for (var row : rows) {
+                if (row[1] == null) {
+                    // Warnings stored before there were several sources expire on next poll of Digitraffic
+                    continue;
+                }
+                scheduleValidityTimers(((Number) row[0]).longValue(), (String) row[1], (LocalDateTime) row[2], (LocalDateTime) row[3]);
+            }
+            logger.info("Init: Loaded {} validity timers of active nautical warnings", validityTimers.size());
+        }
+    }
+
+    private ReentrantLock sourceLock(String sourceName) {
+        return sourceLocks.computeIfAbsent(sourceName, name -> new ReentrantLock());
+    }
+
+    long getValidityTimerTickMillis() {
+        return validityTimerTickMillis;
+    }
+
+    /**
+     * Convert warning features of given source to NauticalWarningEntities in parallel, using dedicated conversion pool.
+     * Results are in the same order as given features. A feature that fails conversion is logged and its result
+     * holds the error instead, without affecting conversion of the other features.
+     * <p>
+     * Shared state used during conversion, and why it is safe to use from several threads at once:
+     * <ul>
+     *     <li>FreeMarker Configuration and Template are thread safe once configured, and each
+     *     render gets its own data model map</li>
+     *     <li>GeoLocationMatcher only reads an immutable SeaAreaDataset through atomic reference, its match
+     *     cache is synchronized, and GeoJSON readers are created per call. Prepared JTS geometries of areas
+     *     are thread safe, and other area geometries are only read.</li>
+     *     <li>DateTimeFormatters and StringEscapeUtils are immutable</li>
+     *     <li>Each feature is converted to its own parameters and entity objects, nothing is written to
+     *     shared fields of this service</li>
+     * </ul>
+     *
+     * @param source
+     * @param features
+     * @return
+     */
+    private List<FeatureConversion> convertFeatures(WarningSource source, List<JsonNode> features) {
+        if (features.isEmpty()) {
+            return List.of();
+        }
+        try {
+            return conversionPool.submit(() -> features.parallelStream()
+                    .map(f -> convertFeature(source, f))
+                    .collect(toList()))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IntegrationException("Interrupted while converting nautical warnings", e);
+        } catch (ExecutionException e) {
+            throw new IntegrationException("Could not convert nautical warnings", e.getCause());
+        }
+    }
+
+    /**
+     * Run given features through the same conversion as polled warnings: area matching, coordinate
+     * encoding, rendering of both active and expired S124 documents, and schema validation.
+     * Nothing is stored or delivered. Used for warming up the conversion before the first poll.
+     *
+     * @param source   source the features are converted as
+     * @param features
+     * @return converted warnings, not stored
+     */
+    List<NauticalWarningEntity> convertWithoutSaving(WarningSource source, List<JsonNode> features) {
+        var warnings = convertFeatures(source, features).stream()
+                .filter(c -> c.warning != null)
+                .map(c -> c.warning)
+                .collect(toList());
+        var now = ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+        try {
+            for (var warning : warnings) {
+                renderS124Document(warning.getS124Parameters(), now);
+            }
+        } catch (IOException | TemplateException e) {
+            throw new RuntimeException(e);
+        }
+        schemaValidator.validateAll(warnings);
+        return warnings;
+    }
+
+    private FeatureConversion convertFeature(WarningSource source, JsonNode feature) {
+        var event = new FeatureConversionEvent(source.getName(), source.toWarningId(getFeatureId(feature)));
+        event.begin();
+        try {
+            return new FeatureConversion(feature, processGeoJsoNWarningForDatabase(source, feature, event), null);
+        } catch (RuntimeException e) {
+            event.error = e.getClass().getName();
+            logger.error("Could not convert warning with id {} from source {}, skipping it.", getFeatureId(feature), source.getName(), e);
+            return new FeatureConversion(feature, null, e);
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * Quarantine features that failed conversion now, and release quarantined features
+     * that were converted now or that are not returned by the source anymore.
+     */
+    private void updateQuarantine(WarningSource source, Map<Long, QuarantinedFeatureEntity> quarantinedFeatures,
+                                  List<FeatureConversion> conversions, Set<Long> idsReturnedFromAPI) {
+        var released = new ArrayList<QuarantinedFeatureEntity>();
+        for (var conversion : conversions) {
+            var warningId = source.toWarningId(getFeatureId(conversion.feature));
+            var quarantined = quarantinedFeatures.get(warningId);
+            if (conversion.error != null) {
+                featureQuarantine.quarantine(source, warningId, conversion.feature, conversion.error, quarantined);
+            } else if (quarantined != null) {
+                released.add(quarantined);
+            }
+        }
+        quarantinedFeatures.values().stream()
+                .filter(q -> !idsReturnedFromAPI.contains(q.getId()))
+                .forEach(released::add);
+        featureQuarantine.release(released);
+    }
+
+    /**
+     * Features without numeric id that fits in id namespace of the source cannot be told apart
+     * between polls, so they are dropped
+     */
+    private boolean hasValidId(WarningSource source, JsonNode feature) {
+        var id = feature.path("properties").path("id");
+        var featureId = id.isIntegralNumber() || id.isTextual() ? id.asLong(-1) : -1;
+        if (featureId >= 0 && featureId < WarningSource.NAMESPACE_SIZE) {
+            return true;
+        }
+        logger.warn("Dropping warning without valid id from source {}: {}", source.getName(), feature);
+        featureQuarantine.invalidFeature();
+        return false;
+    }
+
+    private static long getFeatureId(JsonNode feature) {
+        return feature.get("properties").get("id").asLong();
+    }
+
+    private void recordLatencies(List<NauticalWarningEntity> newItemsList) {
+        for (var warning : newItemsList) {
+            if (warning.getPublishedTime() != null) {
+                latencyHistograms.record("polling", Duration.between(warning.getPublishedTime(), warning.getFirstSeenTime()));
+            }
+            latencyHistograms.record("pipeline", Duration.between(warning.getFirstSeenTime(), warning.getPersistedTime()));
+        }
+    }
+
+    /**
+     * Warnings that have been delivered as active, or are delivered as active now. Warnings whose validity has
+     * not started are not delivered when they are polled, nor when they expire before their validity starts.
+     */
+    private static List<NauticalWarningEntity> activated(List<NauticalWarningEntity> warnings) {
+        return warnings.stream()
+                .filter(w -> w.getActivationTime() == null)
+                .collect(toList());
+    }
+
+    private static List<NauticalWarningEntity> withoutValidationErrors(List<NauticalWarningEntity> warnings) {
+        return warnings.stream()
+                .filter(w -> w.getValidationError() == null)
+                .collect(toList());
+    }
+
     private void logChangedItems(List<NauticalWarningEntity> newItemsList, List<NauticalWarningEntity> expiredItemsList) {
         var newIds = String.join(",", newItemsList.stream().map(i -> String.valueOf(i.getId())).collect(toList()));
         var expiredIds = String.join(",", expiredItemsList.stream().map(i -> String.valueOf(i.getId())).collect(toList()));
@@ -120,107 +602,128 @@ public class NauticalWarningsService {
 
 
     /**
-     * If any new items are found, they are delivered to any interested parties,
-     * for example SMA and email recipients.
+     * If any new items are found, they are queued for delivery to any interested parties,
+     * for example SMA and email recipients. Delivery itself happens in the background
+     * once the current transaction commits, so it never holds the transaction open.
      *
      * @param newItemsList
      */
     private void notifyNewItems(List<NauticalWarningEntity> newItemsList) {
-        if (!smaIntegrationEnabled || newItemsList.size() == 0) {
+        if (newItemsList.size() == 0) {
             logger.info("No new items to notify");
             return;
         }
         logger.info("Notifying interested parties about {} new items.", newItemsList.size());
-        if (smaIntegrationEnabled) {
-            newItemsList.forEach(smaClient::sendS124Notification);
-        }
-        logger.info("Notifications were successful.");
+        deliveryDispatcher.enqueue(newItemsList, WarningStatus.ACTIVE);
     }
 
     /**
      * If any warnings have disappeared from Digitraffic API they are marked as expired (validity end date is current timestamp),
-     * and sent to any interested parties
+     * and queued for delivery to any interested parties
      *
      * @param expiredItemsList
      */
     private void notifyExpiredItems(List<NauticalWarningEntity> expiredItemsList) {
-        if (!smaIntegrationEnabled || expiredItemsList.size() == 0) {
+        if (expiredItemsList.size() == 0) {
             logger.info("No expired items to notify");
             return;
         }
         logger.info("Notifying interested parties about {} expired items.", expiredItemsList.size());
-        expiredItemsList.forEach(smaClient::sendS124Notification);
-        logger.info("Notifications were successful.");
+        deliveryDispatcher.enqueue(expiredItemsList, WarningStatus.EXPIRED);
     }
 
 
     /**
-     * When warning is expired (no longer in digitraffic API), its expired time is set to current moment,
-     * and S124 document is updated to contain the expiry moment as validity end time
-     * To retain original creation times and information related to that, there's some more code
-     * to find if from database creation time instead of regenerating it from current moment.
+     * Expire given warning, or leave it active until next poll if that fails
+     */
+    private Optional<NauticalWarningEntity> expireWarning(String sourceName, NauticalWarningEntity warning, LocalDateTime expiryTimeUtc) {
+        try {
+            return Optional.of(processExpiredWarning(sourceName, warning, expiryTimeUtc));
+        } catch (RuntimeException e) {
+            logger.error("Could not expire warning with id {} from source {}, trying again on next poll.", warning.getId(), sourceName, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * When warning is expired (no longer in digitraffic API, or its validity has ended), its expired time is set
+     * to the expiry moment, and S124 document is updated to contain the expiry moment as validity end time.
+     * S124 document is rendered from the structured parameters stored when the warning was created,
+     * so expiry does not need to parse the original geojson or match its area again. Warnings stored
+     * before the parameters were persisted are handled by regenerating the parameters once from
+     * original json, with validity start taken from database creation time.
      *
+     * @param sourceName
      * @param warning
+     * @param expiryTimeUtc
      * @return
      */
-    private NauticalWarningEntity processExpiredWarning(NauticalWarningEntity warning) {
+    private NauticalWarningEntity processExpiredWarning(String sourceName, NauticalWarningEntity warning, LocalDateTime expiryTimeUtc) {
         try {
+            warning.setSource(sourceName);
+            if (warning.getS124Parameters() == null) {
+                warning.setS124Parameters(regenerateParametersForLegacyWarning(warning));
+            }
 
-            var featureNode = new ObjectMapper().readValue(warning.getJsonDocument(), ObjectNode.class);
-            var templateParams = findParametersFromMarineWarningJson(featureNode);
-
-            // Overwrite certain time-related fields that should not change by which moment we expire
-            var originalValidityStartLocalTime = warning.getCreatedTime();
-            ZonedDateTime ldtZonedValidityStartTime = originalValidityStartLocalTime.atZone(ZoneId.systemDefault());
-            ZonedDateTime utcZonedValidityStartTime = ldtZonedValidityStartTime.withZoneSameInstant(ZoneOffset.UTC);
-            var warningId = featureNode.get("properties").get("id").asLong();
-            var lastTwoDigitsOfCurrentYear = (String.format("%d", utcZonedValidityStartTime.getYear())).substring(2);
-            String s124Id = buildS124ID(warningId, lastTwoDigitsOfCurrentYear);
-            templateParams.put("id", s124Id);
-            templateParams.put("year", lastTwoDigitsOfCurrentYear);
-            var formattedValidityStartDate = utcZonedValidityStartTime.format(ISO_DATE_FORMATTER);
-            templateParams.put("validity_start_date", formattedValidityStartDate);
-            var formattedValidityStartTimeUtc = utcZonedValidityStartTime.format(ISO_TIME_FORMATTER);
-            templateParams.put("validity_start_time_utc", formattedValidityStartTimeUtc);
-
-            var now = ZonedDateTime.now(ZoneOffset.UTC);
-            var expiryTime = now.format(ISO_TIME_FORMATTER);
-            var expiryDate = now.format(ISO_DATE_FORMATTER);
-            templateParams.put("expiry_time", expiryTime);
-            templateParams.put("expiry_date", expiryDate);
-
-            var t = freemakerConfiguration.getTemplate("s124_template.xml");
-            var s124Document = FreeMarkerTemplateUtils
-                    .processTemplateIntoString(t, templateParams);
-            var expiredWarning = new NauticalWarningEntity(
-                    warning.getId(),
-                    warning.getJsonDocument(),
-                    s124Document);
-            expiredWarning.setExpiredTime(now.toLocalDateTime());
-            return expiredWarning;
+            var s124Document = renderS124Document(warning.getS124Parameters(), expiryTimeUtc);
+            warning.setS124Document(s124Document);
+            warning.setExpiredTime(expiryTimeUtc);
+            return warning;
         } catch (IOException | TemplateException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Warnings stored before S124 parameters were persisted only have the original json. Find the parameters
+     * from it, and overwrite certain time-related fields that should not change by which moment we expire.
+     *
+     * @param warning
+     * @return
+     */
+    private S124WarningParameters regenerateParametersForLegacyWarning(NauticalWarningEntity warning) throws IOException {
+        var featureNode = new ObjectMapper().readValue(warning.getJsonDocument(), ObjectNode.class);
+        // Not a conversion of a polled feature, so the event is not committed
+        var parameters = findParametersFromMarineWarningJson(featureNode, warning.getId(), new FeatureConversionEvent(warning.getSource(), warning.getId()));
+
+        var originalValidityStartLocalTime = warning.getCreatedTime();
+        ZonedDateTime ldtZonedValidityStartTime = originalValidityStartLocalTime.atZone(ZoneId.systemDefault());
+        ZonedDateTime utcZonedValidityStartTime = ldtZonedValidityStartTime.withZoneSameInstant(ZoneOffset.UTC);
+        var lastTwoDigitsOfCurrentYear = (String.format("%d", utcZonedValidityStartTime.getYear())).substring(2);
+        parameters.setS124Id(buildS124ID(warning.getId(), lastTwoDigitsOfCurrentYear));
+        parameters.setWarningYear(lastTwoDigitsOfCurrentYear);
+        parameters.setValidityStartTime(utcZonedValidityStartTime.toLocalDateTime());
+        return parameters;
+    }
+
+    /**
+     * S124 id of warning, built from the stored warning id, so that warnings of different sources never share it.
+     * Ids of the primary Digitraffic source are the original Digitraffic ids, see WarningSource.toWarningId.
+     */
     private String buildS124ID(long warningId, String lastTwoDigitsOfCurrentYear) {
         return String.format("NW.FI.FTA.L.%d.%s", warningId, lastTwoDigitsOfCurrentYear);
     }
 
     /**
-     * Grab a digitraffic warning feature as input, and process it to a NauticalWarningEntity db object
+     * Grab a warning feature of given source as input, and process it to a NauticalWarningEntity db object
      * that we are able to store in db.
      *
+     * @param source
      * @param feature
      * @return
      */
-    private NauticalWarningEntity processGeoJsoNWarningForDatabase(JsonNode feature) {
+    private NauticalWarningEntity processGeoJsoNWarningForDatabase(WarningSource source, JsonNode feature, FeatureConversionEvent event) {
         try {
-            var templateParams = findParametersFromMarineWarningJson(feature);
-            var t = freemakerConfiguration.getTemplate("s124_template.xml");
-            var s124Document = FreeMarkerTemplateUtils
-                    .processTemplateIntoString(t, templateParams);
-            return new NauticalWarningEntity(feature.get("properties").get("id").asLong(), feature.toString(), s124Document);
+            var parameters = findParametersFromMarineWarningJson(feature, source.toWarningId(getFeatureId(feature)), event);
+            var renderBeginTime = System.nanoTime();
+            var s124Document = renderS124Document(parameters, null);
+            event.renderDuration = System.nanoTime() - renderBeginTime;
+            event.documentLength = s124Document.length();
+            var warning = new NauticalWarningEntity(source.toWarningId(getFeatureId(feature)), feature.toString(), s124Document, parameters);
+            warning.setSource(source.getName());
+            warning.setRenderedTime(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime());
+            warning.setPublishedTime(parseTime(feature, "publishingTime"));
+            return warning;
         } catch (IOException | TemplateException e) {
             throw new RuntimeException(e);
         }
@@ -228,6 +731,40 @@ public class NauticalWarningsService {
     }
 
 
+    /**
+     * Given time property of warning, eg. publishingTime or validityEndTime, in UTC, or null if it is missing
+     * or not a valid ISO timestamp
+     *
+     * @param feature
+     * @param property
+     * @return
+     */
+    private static LocalDateTime parseTime(JsonNode feature, String property) {
+        var time = feature.get("properties").get(property);
+        if (time == null || !time.isTextual()) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(time.asText()).atZoneSameInstant(ZoneOffset.UTC).toLocalDateTime();
+        } catch (DateTimeParseException e) {
+            logger.warn("Could not parse {} {} of warning {}", property, time.asText(), getFeatureId(feature));
+            return null;
+        }
+    }
+
+    /**
+     * Whether validity of warning has already ended. Such warnings are not stored, so that a warning expired by
+     * its validity end is not added again while its source still returns it.
+     *
+     * @param feature
+     * @param now     UTC
+     * @return
+     */
+    private static boolean hasValidityEnded(JsonNode feature, LocalDateTime now) {
+        var validityEndTime = parseTime(feature, "validityEndTime");
+        return validityEndTime != null && !validityEndTime.isAfter(now);
+    }
+
     /**
      * We do not include warnings where type is 'Navigatonal warnings for yachtsmen'
      *
@@ -235,7 +772,7 @@ public class NauticalWarningsService {
      * @return
      */
     private boolean filterOutNavigationalWarningsForFishermen(JsonNode feature) {
-        var warningType = feature.get("properties").get("typeEn").asText();
+        var warningType = feature.path("properties").path("typeEn").asText();
         var yachtsmenWarning = warningType.equals("Navigational warnings for yachtsmen");
         if (yachtsmenWarning) {
             logger.info("Skipping digitraffic warning with type of Navigational warnings for yachtsmen.");
@@ -246,55 +783,119 @@ public class NauticalWarningsService {
 
     /**
      * We collect information from original digitraffic warning json,
-     * process that information to suitable S124 format, and populate
-     * parameters map with that information. This function is the core
-     * of the transformation process
+     * and process that information to suitable S124 format. This function
+     * is the core of the transformation process. Resulting parameters are
+     * stored with the warning, so the S124 document can be rendered again
+     * without repeating this step.
      *
      * @param feature
+     * @param warningId id of the stored warning, in the id namespace of its source
+     * @param event     conversion event to record area match duration and vertex counts to
      * @return
      */
-    private Map<String, Object> findParametersFromMarineWarningJson(JsonNode feature) {
-        var parameters = new HashMap<String, Object>();
+    private S124WarningParameters findParametersFromMarineWarningJson(JsonNode feature, long warningId, FeatureConversionEvent event) {
+        var parameters = new S124WarningParameters();
         var now = ZonedDateTime.now(ZoneOffset.UTC);
-        var warningId = feature.get("properties").get("id").asLong();
         var lastTwoDigitsOfCurrentYear = (String.format("%d", now.getYear())).substring(2);
         String s124Id = buildS124ID(warningId, lastTwoDigitsOfCurrentYear);
-        parameters.put("id", s124Id);
-        parameters.put("warning_number", "" + feature.get("properties").get("number"));
-        parameters.put("year", lastTwoDigitsOfCurrentYear);
-        parameters.put("general_area", GeoLocationMatcher.findGeneralAreaName(feature));
+        parameters.setS124Id(s124Id);
+        parameters.setWarningNumber(feature.get("properties").path("number").asText());
+        parameters.setWarningYear(lastTwoDigitsOfCurrentYear);
+        var areaMatchBeginTime = System.nanoTime();
+        parameters.setGeneralArea(geoLocationMatcher.findGeneralAreaName(feature));
+        event.areaMatchDuration = System.nanoTime() - areaMatchBeginTime;
         var geometryType = feature.get("geometry").get("type").asText();
-        parameters.put("geometry_type", geometryType);
+        parameters.setGeometryType(geometryType);
+        event.geometryType = geometryType;
         var coordinates = (ArrayNode) feature.get("geometry").get("coordinates");
         var transformedCoordinates = transformCoordinateFormat(geometryType, coordinates);
-        parameters.put("gml_pos_coordinates", transformedCoordinates);
+        var encodedCoordinates = geometryReducer.isEnabled()
+                ? geometryReducer.reduceToGmlPos(feature.get("geometry"))
+                : transformedCoordinates;
+        parameters.setGmlPosCoordinates(encodedCoordinates);
+        parameters.setOriginalVertexCount(GeometryReducer.countPositions(transformedCoordinates));
+        parameters.setVertexCount(GeometryReducer.countPositions(encodedCoordinates));
+        parameters.setOriginalCoordinatesLength(transformedCoordinates.length());
+        parameters.setCoordinatesLength(encodedCoordinates.length());
+        event.originalVertexCount = parameters.getOriginalVertexCount();
+        event.vertexCount = parameters.getVertexCount();
+        if (encodedCoordinates.length() < transformedCoordinates.length()) {
+            logger.debug("Reduced geometry of warning {} from {} to {} positions, and from {} to {} characters",
+                    warningId, parameters.getOriginalVertexCount(), parameters.getVertexCount(),
+                    transformedCoordinates.length(), encodedCoordinates.length());
+        }
         // Fix: Some entries do not have creationTime set, at least in test environment, so we use current timestamp to make the document valid
         if (feature.get("properties").hasNonNull("creationTime")) {
             var creationTime = feature.get("properties").get("creationTime").asText();
             String formattedCreationTime = getDatePartFromIsoDatetime(creationTime);
-            parameters.put("creation_time", formattedCreationTime);
+            parameters.setSourceDate(formattedCreationTime);
         } else {
-            parameters.put("creation_time", ISO_DATE_FORMATTER.format(now));
+            parameters.setSourceDate(ISO_DATE_FORMATTER.format(now));
         }
         var publishingTime = feature.get("properties").get("publishingTime").asText();
         String formattedPublishingTime = getDatePartFromIsoDatetime(publishingTime);
-        parameters.put("publishing_time", formattedPublishingTime);
-        var formattedValidityStartDate = ISO_DATE_FORMATTER.format(now);
-        parameters.put("validity_start_date", formattedValidityStartDate);
-        var formattedValidityStartTimeUtc = ISO_TIME_FORMATTER.format(now);
-        parameters.put("validity_start_time_utc", formattedValidityStartTimeUtc);
+        parameters.setPublishingDate(formattedPublishingTime);
+        // Validity window given by the source, starting from now if the source does not give it
+        var validityStartTime = parseTime(feature, "validityStartTime");
+        parameters.setValidityStartTime(validityStartTime != null ? validityStartTime : now.toLocalDateTime());
+        parameters.setValidityEndTime(parseTime(feature, "validityEndTime"));
         var locationEn = feature.get("properties").get("locationEn").asText();
-        parameters.put("title_text", StringEscapeUtils.escapeXml10(locationEn));
+        parameters.setTitleText(StringEscapeUtils.escapeXml10(locationEn));
         var contentsEn = feature.get("properties").get("contentsEn").asText();
-        parameters.put("warning_subject_text", StringEscapeUtils.escapeXml10(contentsEn));
+        parameters.setSubjectText(StringEscapeUtils.escapeXml10(contentsEn));
         var typeOfWarning = calculateWarningType(feature);
-        parameters.put("type_of_warning", typeOfWarning);
-        // These are hardcoded for now, should form a box around Nordic waters
-        parameters.put("lower_corner", "-6.0000 40.0000");
-        parameters.put("upper_corner", "45.0000 65.0000");
+        parameters.setTypeOfWarning(typeOfWarning);
         return parameters;
     }
 
+    /**
+     * Render S124 document from stored parameters. If expiry time is given, it is included as the validity
+     * end of the warning, otherwise validity end given by the source is, if any.
+     *
+     * @param parameters
+     * @param expiryTimeUtc expiry moment in UTC, or null for active warning
+     * @return
+     */
+    private String renderS124Document(S124WarningParameters parameters, LocalDateTime expiryTimeUtc) throws IOException, TemplateException {
+        var t = freemakerConfiguration.getTemplate("s124_template.xml");
+        return FreeMarkerTemplateUtils
+                .processTemplateIntoString(t, buildTemplateModel(parameters, expiryTimeUtc));
+    }
+
+    /**
+     * Populate template parameters map from structured S124 parameters
+     *
+     * @param parameters
+     * @param expiryTimeUtc
+     * @return
+     */
+    private static Map<String, Object> buildTemplateModel(S124WarningParameters parameters, LocalDateTime expiryTimeUtc) {
+        var model = new HashMap<String, Object>();
+        model.put("id", parameters.getS124Id());
+        model.put("warning_number", parameters.getWarningNumber());
+        model.put("year", parameters.getWarningYear());
+        model.put("general_area", parameters.getGeneralArea());
+        model.put("geometry_type", parameters.getGeometryType());
+        model.put("gml_pos_coordinates", parameters.getGmlPosCoordinates());
+        model.put("creation_time", parameters.getSourceDate());
+        model.put("publishing_time", parameters.getPublishingDate());
+        model.put("validity_start_date", ISO_DATE_FORMATTER.format(parameters.getValidityStartTime()));
+        model.put("validity_start_time_utc", ISO_TIME_FORMATTER.format(parameters.getValidityStartTime()));
+        model.put("title_text", parameters.getTitleText());
+        model.put("warning_subject_text", parameters.getSubjectText());
+        model.put("type_of_warning", parameters.getTypeOfWarning());
+        // These are hardcoded for now, should form a box around Nordic waters
+        model.put("lower_corner", "-6.0000 40.0000");
+        model.put("upper_corner", "45.0000 65.0000");
+        // Validity of an active warning ends at the end given by the source, if any
+        var validityEndTime = expiryTimeUtc != null ? expiryTimeUtc : parameters.getValidityEndTime();
+        if (validityEndTime != null) {
+            model.put("expiry_time", ISO_TIME_FORMATTER.format(validityEndTime));
+            model.put("expiry_date", ISO_DATE_FORMATTER.format(validityEndTime));
+        }
+        return model;
+    }
+
 
     /**
      * Point/area coordinates are originally in json array in digitraffic warning.
@@ -364,6 +965,8 @@ public class NauticalWarningsService {
         LocalDateTime expiryDate = LocalDateTime.now().minus(Period.ofMonths(1));
         logger.info("Deleting items expired before " + expiryDate);
         warningRepository.deleteByExpiredTimeBefore(expiryDate);
+        deliveryDispatcher.deleteDeliveriesCreatedBefore(expiryDate);
+        warningHistory.deleteOldHistory();
     }
 
     /**
@@ -387,22 +990,76 @@ public class NauticalWarningsService {
         return warningRepository.findAllByExpiredTimeIsNotNull();
     }
 
+    /**
+     * Propagation timeline of given warning, from publishing in its source to delivery to every sink
+     *
+     * @param warningId
+     * @return
+     */
+    public Optional<WarningTimeline> getTimeline(long warningId) {
+        return warningRepository.findById(warningId)
+                .map(warning -> new WarningTimeline(warning, deliveryDispatcher.getDeliveryAttempts(warningId)));
+    }
 
     /**
-     * Sometimes SMA warning deliveries may fail due to network errors or SMA service
-     * not being up. This function will find all those items from database, and will try
-     * to re-send them. If successful, these items will be marked as delivered. If not successful,
-     * delivery attempt will be made again.
+     * Find nautical warnings matching all of the given filters, one page at a time.
+     * Any filter left null is not applied.
+     *
+     * @param status        active or expired warnings
+     * @param generalArea   S124 general area name, eg. 'Gulf of Finland'
+     * @param typeOfWarning S124 type of warning, eg. 'local' or 'coastal'
+     * @param warningNumber warning number
+     * @param validAt       UTC moment that must be within warning validity window
+     * @param pageable
+     * @return
      */
-    public void retryFailedSmaNotifications() {
-        List<NauticalWarningEntity> failedWarnings = warningRepository.findAllBySmaDeliveryTimeIsNull();
-        if (failedWarnings.size() == 0) {
-            return;
+    public Page<NauticalWarningEntity> findWarnings(WarningStatus status, String generalArea, String typeOfWarning,
+                                                    String warningNumber, LocalDateTime validAt, Pageable pageable) {
+        Specification<NauticalWarningEntity> specification = Specification.where(null);
+        if (status != null) {
+            specification = specification.and(NauticalWarningSpecifications.hasStatus(status));
+        }
+        if (generalArea != null) {
+            specification = specification.and(NauticalWarningSpecifications.inGeneralArea(generalArea));
+        }
+        if (typeOfWarning != null) {
+            specification = specification.and(NauticalWarningSpecifications.ofWarningType(typeOfWarning));
+        }
+        if (warningNumber != null) {
+            specification = specification.and(NauticalWarningSpecifications.withWarningNumber(warningNumber));
+        }
+        if (validAt != null) {
+            specification = specification.and(NauticalWarningSpecifications.validAt(validAt));
+        }
+        return warningRepository.findAll(specification, pageable);
+    }
+
+
+    /**
+     * Warning whose activation or validity end is due, by source so that it can be locked
+     */
+    private static final class ValidityTimer {
+        private final long warningId;
+        private final String source;
+
+        private ValidityTimer(long warningId, String source) {
+            this.warningId = warningId;
+            this.source = source;
+        }
+    }
+
+    /**
+     * Result of converting single feature: either the warning or the error
+     */
+    private static final class FeatureConversion {
+        private final JsonNode feature;
+        private final NauticalWarningEntity warning;
+        private final RuntimeException error;
+
+        private FeatureConversion(JsonNode feature, NauticalWarningEntity warning, RuntimeException error) {
+            this.feature = feature;
+            this.warning = warning;
+            this.error = error;
         }
-        failedWarnings.forEach(System.out::println);
-        logger.info("Retrying {} failed SMA nautical warning notifications.", failedWarnings.size());
-        failedWarnings.forEach(smaClient::sendS124Notification);
-        warningRepository.saveAll(failedWarnings);
-        logger.info("All failed warnings were retried.");
     }
 }
@@ -0,0 +1,176 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Optional warm-up of warning conversion at startup. The first poll after a deploy converts every
+ * warning at once, and without warm-up it does that on cold code: FreeMarker, JTS, GeoJSON parsing and
+ * Jackson all run interpreted at first. Warm-up pushes a bundled set of synthetic warnings through the
+ * same conversion for a number of rounds, so the JIT compiler has compiled the hot paths before the
+ * first real poll. Nothing is stored or delivered.
+ * <p>
+ * Coordinates of the synthetic warnings are shifted slightly every round, so each round really matches
+ * areas instead of hitting the match cache, and the cache is emptied once warm-up finishes.
+ * Application reports ready once warm-up finishes or fails, and polling does not start before that.
+ */
+@Component
+public class NauticalWarningsWarmUp {
+
+    private static final Logger logger = LoggerFactory.getLogger(NauticalWarningsWarmUp.class);
+
+    private static final String WARM_UP_WARNINGS = "/nautical-warnings/nw-warmup-warnings.json";
+    private static final double ROUND_OFFSET_DEGREES = 0.00001;
+
+    private static final WarningSource WARM_UP_SOURCE = new WarningSource() {
+        @Override
+        public String getName() {
+            return "warm-up";
+        }
+
+        @Override
+        public int getNamespace() {
+            return 0;
+        }
+
+        @Override
+        public Duration getPollInterval() {
+            return Duration.ZERO;
+        }
+
+        @Override
+        public List<JsonNode> fetchWarnings() {
+            return List.of();
+        }
+    };
+
+    @Value("${nautical-warnings.warm-up.enabled:false}")
+    private boolean enabled;
+    @Value("${nautical-warnings.warm-up.rounds:200}")
+    private int rounds;
+    @Value("${nautical-warnings.warm-up.max-duration:60000}")
+    private long maxDurationMillis;
+
+    private final NauticalWarningsService service;
+    private final GeoLocationMatcher geoLocationMatcher;
+    private final ObjectMapper objectMapper;
+    private final CompletableFuture<Void> readiness = new CompletableFuture<>();
+
+    @Autowired
+    public NauticalWarningsWarmUp(NauticalWarningsService service, GeoLocationMatcher geoLocationMatcher, ObjectMapper objectMapper) {
+        this.service = service;
+        this.geoLocationMatcher = geoLocationMatcher;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            logger.info("Init: Nautical warnings warm-up is toggled off");
+            readiness.complete(null);
+        }
+    }
+
+    /**
+     * Warm-up runs in its own thread once application has started, so it does not delay startup
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (readiness.isDone()) {
+            return;
+        }
+        var thread = new Thread(this::warmUp, "nautical-warnings-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isReady() {
+        return readiness.isDone();
+    }
+
+    /**
+     * Completes once warm-up has finished, or right away when warm-up is toggled off
+     */
+    public CompletionStage<Void> whenReady() {
+        return readiness.minimalCompletionStage();
+    }
+
+    private void warmUp() {
+        try {
+            var features = loadWarmUpWarnings();
+            var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDurationMillis);
+            long firstRoundNanos = 0;
+            long lastRoundNanos = 0;
+            int round = 0;
+            logger.info("Warming up nautical warning conversion with {} synthetic warnings", features.size());
+            for (; round < rounds && System.nanoTime() < deadline; round++) {
+                var roundFeatures = shifted(features, round * ROUND_OFFSET_DEGREES);
+                var beginTime = System.nanoTime();
+                var warnings = service.convertWithoutSaving(WARM_UP_SOURCE, roundFeatures);
+                objectMapper.writeValueAsBytes(warnings);
+                lastRoundNanos = System.nanoTime() - beginTime;
+                if (round == 0) {
+                    firstRoundNanos = lastRoundNanos;
+                }
+            }
+            logger.info("Nautical warning conversion warmed up in {} rounds, first round took {}ms and last round {}ms",
+                    round, TimeUnit.NANOSECONDS.toMillis(firstRoundNanos), TimeUnit.NANOSECONDS.toMillis(lastRoundNanos));
+        } catch (IOException | RuntimeException e) {
+            logger.error("Warm-up of nautical warning conversion failed, continuing without it", e);
+        } finally {
+            geoLocationMatcher.clearMatchCache();
+            readiness.complete(null);
+        }
+    }
+
+    private List<JsonNode> loadWarmUpWarnings() throws IOException {
+        try (var inputStream = NauticalWarningsWarmUp.class.getResourceAsStream(WARM_UP_WARNINGS)) {
+            if (inputStream == null) {
+                throw new IOException("Warm-up warnings " + WARM_UP_WARNINGS + " not found");
+            }
+            var features = objectMapper.readTree(inputStream).withArray("features");
+            return StreamSupport.stream(features.spliterator(), false).collect(toList());
+        }
+    }
+
+    private static List<JsonNode> shifted(List<JsonNode> features, double offset) {
+        return features.stream()
+                .map(feature -> {
+                    var copy = (ObjectNode) feature.deepCopy();
+                    var geometry = (ObjectNode) copy.get("geometry");
+                    geometry.set("coordinates", shifted(geometry.get("coordinates"), offset));
+                    return (JsonNode) copy;
+                })
+                .collect(toList());
+    }
+
+    private static JsonNode shifted(JsonNode coordinates, double offset) {
+        if (coordinates.isNumber()) {
+            return DoubleNode.valueOf(coordinates.asDouble() + offset);
+        }
+        var shifted = JsonNodeFactory.instance.arrayNode();
+        coordinates.forEach(coordinate -> shifted.add(shifted(coordinate, offset)));
+        return shifted;
+    }
+}
@@ -0,0 +1,80 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a single poll of a warning source, from reading old warnings to logging the changes.
+ * Durations of the poll phases are included, so a slow poll can be attributed to a phase without a profiler.
+ * Enabled with nautical-warnings.jfc, see NauticalWarningsRecordingAnalyser for summarising recordings.
+ */
+@Name(PollCycleEvent.NAME)
+@Label("Nautical Warnings Poll")
+@Category({"Winvis", "Nautical Warnings"})
+@Description("Poll of a nautical warning source")
+@StackTrace(false)
+class PollCycleEvent extends Event {
+
+    static final String NAME = "fi.liikennevirasto.winvis.nauticalwarnings.PollCycle";
+
+    @Label("Source")
+    String source;
+
+    @Label("Old Warnings")
+    @Description("Active warnings of the source in database before the poll")
+    int oldWarnings;
+
+    @Label("Fetched")
+    @Description("Features returned by the source")
+    int fetched;
+
+    @Label("Filtered")
+    @Description("Features dropped for invalid id or warning type")
+    int filtered;
+
+    @Label("Converted")
+    @Description("Features not yet in database, or changed since quarantined, that were converted")
+    int converted;
+
+    @Label("Conversion Failures")
+    int conversionFailures;
+
+    @Label("New")
+    int newItems;
+
+    @Label("Expired")
+    int expired;
+
+    @Label("Invalid")
+    @Description("New and expired warnings that failed S124 schema validation")
+    int invalid;
+
+    @Label("Fetch Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long fetchDuration;
+
+    @Label("Conversion Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long conversionDuration;
+
+    @Label("Validation Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long validationDuration;
+
+    @Label("Transaction Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long transactionDuration;
+
+    @Label("Completed")
+    @Description("False if the poll failed, in which case counts are those reached before the failure")
+    boolean completed;
+
+    PollCycleEvent(String source) {
+        this.source = source;
+    }
+}
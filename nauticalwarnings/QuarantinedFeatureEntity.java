@@ -0,0 +1,161 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeDeserializer;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeSerializer;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Warning feature that could not be converted. The feature is skipped in later polls for as long
+ * as its content hash stays the same, and converted again once its content changes.
+ */
+@Entity
+@Table(name = "nautical_warning_quarantine", indexes = {
+        @Index(name = "idx_nautical_warning_quarantine_source", columnList = "source")
+})
+public class QuarantinedFeatureEntity {
+
+    /**
+     * Id the warning would have been stored with, ie. in id namespace of its source
+     */
+    @Id
+    private long id;
+
+    @Column(length = 50)
+    private String source;
+
+    /**
+     * SHA-256 of the original feature json, Base64 encoded
+     */
+    @Column(length = 44, nullable = false)
+    private String contentHash;
+
+    /**
+     * Original feature json that failed conversion
+     */
+    @Column(length = 10485760)
+    private String jsonDocument;
+
+    /**
+     * Error of the last failed conversion
+     */
+    @Column(length = 4000)
+    private String error;
+
+    /**
+     * How many times conversion of this feature has failed. Skipped polls are not counted.
+     */
+    private int failureCount;
+
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    private LocalDateTime firstFailedTime;
+
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    private LocalDateTime lastFailedTime;
+
+
+    public QuarantinedFeatureEntity() {
+        // default constructor
+    }
+
+    public QuarantinedFeatureEntity(long id, String source) {
+        this.id = id;
+        this.source = source;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getJsonDocument() {
+        return jsonDocument;
+    }
+
+    public void setJsonDocument(String jsonDocument) {
+        this.jsonDocument = jsonDocument;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    public void setFailureCount(int failureCount) {
+        this.failureCount = failureCount;
+    }
+
+    public LocalDateTime getFirstFailedTime() {
+        return firstFailedTime;
+    }
+
+    public void setFirstFailedTime(LocalDateTime firstFailedTime) {
+        this.firstFailedTime = firstFailedTime;
+    }
+
+    public LocalDateTime getLastFailedTime() {
+        return lastFailedTime;
+    }
+
+    public void setLastFailedTime(LocalDateTime lastFailedTime) {
+        this.lastFailedTime = lastFailedTime;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        QuarantinedFeatureEntity that = (QuarantinedFeatureEntity) o;
+        return id == that.id &&
+                failureCount == that.failureCount &&
+                Objects.equals(source, that.source) &&
+                Objects.equals(contentHash, that.contentHash) &&
+                Objects.equals(jsonDocument, that.jsonDocument) &&
+                Objects.equals(error, that.error) &&
+                Objects.equals(firstFailedTime, that.firstFailedTime) &&
+                Objects.equals(lastFailedTime, that.lastFailedTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, source, contentHash, jsonDocument, error, failureCount, firstFailedTime, lastFailedTime);
+    }
+
+    @Override
+    public String toString() {
+        return "QuarantinedFeatureEntity{" +
+                "id=" + id +
+                ", source='" + source + '\'' +
+                ", contentHash='" + contentHash + '\'' +
+                ", jsonDocument='" + jsonDocument + '\'' +
+                ", error='" + error + '\'' +
+                ", failureCount=" + failureCount +
+                ", firstFailedTime=" + firstFailedTime +
+                ", lastFailedTime=" + lastFailedTime +
+                '}';
+    }
+}
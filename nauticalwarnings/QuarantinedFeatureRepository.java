@@ -0,0 +1,16 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface QuarantinedFeatureRepository extends JpaRepository<QuarantinedFeatureEntity, Long> {
+
+    List<QuarantinedFeatureEntity> findAllBySource(String source);
+
+    List<QuarantinedFeatureEntity> findAllByOrderByLastFailedTimeDesc();
+
+    @Query("select q.source, count(q) from QuarantinedFeatureEntity q group by q.source")
+    List<Object[]> countBySource();
+}
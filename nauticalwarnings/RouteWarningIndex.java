@@ -0,0 +1,194 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.wololo.jts2geojson.GeoJSONReader;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Spatial index of active warning geometries, for finding warnings along RTZ routes.
+ * <p>
+ * Geometries of active warnings are parsed once, prepared, and placed in an STR tree, which is swapped
+ * atomically as a whole. Index is rebuilt after every poll that changed active warnings, and periodically
+ * in case warnings were changed some other way. Queries only read the current index, so they take
+ * milliseconds even for routes with hundreds of waypoints, and never touch the database.
+ * <p>
+ * Each leg of route gets a corridor of its own, with rounded ends, in a local equirectangular projection
+ * scaled to meters at the latitude of the leg, which is accurate enough for legs of tens of nautical miles.
+ */
+@Component
+public class RouteWarningIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(RouteWarningIndex.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final GeometryFactory geometryFactory = new GeometryFactory();
+
+    private static final double METERS_PER_DEGREE = 111320.0;
+    private static final double MAX_CORRIDOR_HALF_WIDTH_METERS = 100000.0;
+
+    /**
+     * Segments per quarter circle in rounded ends of corridor. Corridor is only used for intersection tests,
+     * so its ends need not be smooth.
+     */
+    private static final int CORRIDOR_QUADRANT_SEGMENTS = 4;
+
+    private final NauticalWarningsRepository warningRepository;
+
+    @Value("${nautical-warnings.route-query.corridor-half-width-meters:1852}")
+    private double defaultCorridorHalfWidthMeters;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(List.of(), LocalDateTime.now()));
+
+    @Autowired
+    public RouteWarningIndex(NauticalWarningsRepository warningRepository) {
+        this.warningRepository = warningRepository;
+    }
+
+    /**
+     * Rebuild index from active warnings in database whose validity has started. Polls of each source, validity
+     * timers and the schedule all refresh, so rebuilds are serialized, and an older read of the database never
+     * replaces a newer index.
+     */
+    @Scheduled(fixedDelayString = "${nautical-warnings.route-query.refresh-frequency:300000}")
+    public synchronized void refresh() {
+        try {
+            var indexedTime = LocalDateTime.now();
+            var rebuilt = new Snapshot(warningRepository.findAllByExpiredTimeIsNullAndActivationTimeIsNull(), indexedTime);
+            snapshot.set(rebuilt);
+            logger.info("Indexed {} active nautical warnings for route queries", rebuilt.size);
+        } catch (RuntimeException e) {
+            logger.error("Could not index active nautical warnings for route queries, keeping current index", e);
+        }
+    }
+
+    /**
+     * Find active warnings whose geometry intersects corridor of any leg of given route
+     *
+     * @param route
+     * @param corridorHalfWidthMeters distance of corridor from leg on each side, or null for configured default
+     * @return warnings of each leg, and all distinct warnings along the route
+     */
+    public RouteWarnings findWarnings(RtzRoute route, Double corridorHalfWidthMeters) {
+        var halfWidth = corridorHalfWidthMeters != null ? corridorHalfWidthMeters : defaultCorridorHalfWidthMeters;
+        if (!(halfWidth > 0 && halfWidth <= MAX_CORRIDOR_HALF_WIDTH_METERS)) {
+            throw new IllegalArgumentException("Corridor half width must be between 0 and " + MAX_CORRIDOR_HALF_WIDTH_METERS + " meters");
+        }
+        var current = snapshot.get();
+        var waypoints = route.getWaypoints();
+        var legs = new ArrayList<RouteWarnings.Leg>(route.getLegCount());
+        var warningsAlongRoute = new LinkedHashMap<Long, NauticalWarningEntity>();
+        for (int i = 1; i < waypoints.size(); i++) {
+            var corridor = corridor(waypoints.get(i - 1), waypoints.get(i), halfWidth);
+            var warningIds = new TreeSet<Long>();
+            for (var candidate : current.query(corridor)) {
+                if (candidate.geometry.intersects(corridor)) {
+                    warningIds.add(candidate.warning.getId());
+                    warningsAlongRoute.putIfAbsent(candidate.warning.getId(), candidate.warning);
+                }
+            }
+            legs.add(new RouteWarnings.Leg(i - 1, waypoints.get(i - 1), waypoints.get(i), List.copyOf(warningIds)));
+        }
+        return new RouteWarnings(route.getName(), halfWidth, current.indexedTime, legs, List.copyOf(warningsAlongRoute.values()));
+    }
+
+    /**
+     * Corridor around single leg, as polygon in WGS84 degrees. This is the same stadium shape that buffering
+     * the leg would give, but built directly, since general buffering is several times slower and dominates
+     * queries of long routes.
+     */
+    static Geometry corridor(RtzRoute.Waypoint from, RtzRoute.Waypoint to, double halfWidthMeters) {
+        var metersPerLonDegree = METERS_PER_DEGREE * Math.max(Math.cos(Math.toRadians((from.getLat() + to.getLat()) / 2)), 1e-6);
+        var dx = (to.getLon() - from.getLon()) * metersPerLonDegree;
+        var dy = (to.getLat() - from.getLat()) * METERS_PER_DEGREE;
+        var length = Math.hypot(dx, dy);
+        // Direction of leg, or any direction if both waypoints are at the same position
+        var direction = length > 0 ? Math.atan2(dy, dx) : 0.0;
+
+        var capSegments = 2 * CORRIDOR_QUADRANT_SEGMENTS;
+        var coordinates = new Coordinate[2 * (capSegments + 1) + 1];
+        var n = 0;
+        // Half circle around end of leg from its left side to its right side, then around start of leg back again
+        for (int i = 0; i <= capSegments; i++) {
+            coordinates[n++] = offset(to, direction + Math.PI / 2 - Math.PI * i / capSegments, halfWidthMeters, metersPerLonDegree);
+        }
+        for (int i = 0; i <= capSegments; i++) {
+            coordinates[n++] = offset(from, direction - Math.PI / 2 - Math.PI * i / capSegments, halfWidthMeters, metersPerLonDegree);
+        }
+        coordinates[n] = coordinates[0];
+        return geometryFactory.createPolygon(coordinates);
+    }
+
+    private static Coordinate offset(RtzRoute.Waypoint waypoint, double angle, double distanceMeters, double metersPerLonDegree) {
+        return new Coordinate(
+                waypoint.getLon() + Math.cos(angle) * distanceMeters / metersPerLonDegree,
+                waypoint.getLat() + Math.sin(angle) * distanceMeters / METERS_PER_DEGREE);
+    }
+
+    private static Geometry readGeometry(NauticalWarningEntity warning) throws IOException {
+        var geometry = objectMapper.readTree(warning.getJsonDocument()).path("geometry");
+        if (geometry.isMissingNode() || geometry.isNull()) {
+            throw new IOException("Warning has no geometry");
+        }
+        return new GeoJSONReader().read(geometry.toString());
+    }
+
+    /**
+     * Index of active warnings at one moment
+     */
+    private static final class Snapshot {
+        private final STRtree tree = new STRtree();
+        private final LocalDateTime indexedTime;
+        private final int size;
+
+        Snapshot(List<NauticalWarningEntity> warnings, LocalDateTime indexedTime) {
+            this.indexedTime = indexedTime;
+            var indexed = 0;
+            for (var warning : warnings) {
+                try {
+                    var geometry = readGeometry(warning);
+                    tree.insert(geometry.getEnvelopeInternal(), new IndexedWarning(warning, PreparedGeometryFactory.prepare(geometry)));
+                    indexed++;
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Could not index geometry of warning {} for route queries: {}", warning.getId(), e.toString());
+                }
+            }
+            // Building is lazy, so build now instead of in the first query
+            tree.build();
+            this.size = indexed;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<IndexedWarning> query(Geometry corridor) {
+            return tree.query(corridor.getEnvelopeInternal());
+        }
+    }
+
+    private static final class IndexedWarning {
+        private final NauticalWarningEntity warning;
+        private final PreparedGeometry geometry;
+
+        IndexedWarning(NauticalWarningEntity warning, PreparedGeometry geometry) {
+            this.warning = warning;
+            this.geometry = geometry;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Active warnings along RTZ route: warnings whose geometry intersects the corridor of each leg, and all
+ * distinct warnings found along the whole route. Corridor extends given distance to both sides of each leg.
+ */
+public class RouteWarnings {
+
+    private final String routeName;
+    private final double corridorHalfWidthMeters;
+    private final LocalDateTime indexedTime;
+    private final List<Leg> legs;
+    private final List<NauticalWarningEntity> warnings;
+
+    public RouteWarnings(String routeName, double corridorHalfWidthMeters, LocalDateTime indexedTime,
+                         List<Leg> legs, List<NauticalWarningEntity> warnings) {
+        this.routeName = routeName;
+        this.corridorHalfWidthMeters = corridorHalfWidthMeters;
+        this.indexedTime = indexedTime;
+        this.legs = legs;
+        this.warnings = warnings;
+    }
+
+    public String getRouteName() {
+        return routeName;
+    }
+
+    public double getCorridorHalfWidthMeters() {
+        return corridorHalfWidthMeters;
+    }
+
+    /**
+     * When the active warnings the route was compared to were read from database
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    public LocalDateTime getIndexedTime() {
+        return indexedTime;
+    }
+
+    public List<Leg> getLegs() {
+        return legs;
+    }
+
+    public List<NauticalWarningEntity> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * Warnings along single leg of route, from one waypoint to the next
+     */
+    public static class Leg {
+        private final int legIndex;
+        private final RtzRoute.Waypoint from;
+        private final RtzRoute.Waypoint to;
+        private final List<Long> warningIds;
+
+        public Leg(int legIndex, RtzRoute.Waypoint from, RtzRoute.Waypoint to, List<Long> warningIds) {
+            this.legIndex = legIndex;
+            this.from = from;
+            this.to = to;
+            this.warningIds = warningIds;
+        }
+
+        public int getLegIndex() {
+            return legIndex;
+        }
+
+        public RtzRoute.Waypoint getFrom() {
+            return from;
+        }
+
+        public RtzRoute.Waypoint getTo() {
+            return to;
+        }
+
+        public List<Long> getWarningIds() {
+            return warningIds;
+        }
+    }
+}
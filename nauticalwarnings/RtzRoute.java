@@ -0,0 +1,172 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import fi.liikennevirasto.routelib.RTZHandlingException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Waypoints of RTZ route, as far as they are needed for comparing the route to nautical warnings.
+ * <p>
+ * Route is read with StAX in a single pass, without building a DOM, so that routes with hundreds of
+ * waypoints are read quickly. Elements are matched by local name only, so all RTZ versions are accepted.
+ * Only routeInfo, waypoint and position of waypoint are read, everything else is skipped.
+ */
+public final class RtzRoute {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = newXmlInputFactory();
+
+    private final String name;
+    private final List<Waypoint> waypoints;
+
+    public RtzRoute(String name, List<Waypoint> waypoints) {
+        this.name = name;
+        this.waypoints = List.copyOf(waypoints);
+    }
+
+    /**
+     * Read route from given RTZ document. Stream is not closed.
+     *
+     * @param rtz
+     * @return
+     * @throws RTZHandlingException if document is not well formed RTZ, or route has less than two waypoints
+     */
+    public static RtzRoute read(InputStream rtz) {
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(rtz);
+            String routeName = null;
+            var waypoints = new ArrayList<Waypoint>();
+            Integer waypointId = null;
+            String waypointName = null;
+            while (reader.hasNext()) {
+                var event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "routeInfo":
+                            routeName = reader.getAttributeValue(null, "routeName");
+                            break;
+                        case "waypoint":
+                            waypointId = parseWaypointId(reader.getAttributeValue(null, "id"), waypoints.size() + 1);
+                            waypointName = reader.getAttributeValue(null, "name");
+                            break;
+                        case "position":
+                            if (waypointId != null) {
+                                waypoints.add(new Waypoint(waypointId, waypointName,
+                                        parseCoordinate(reader.getAttributeValue(null, "lat"), 90, waypointId),
+                                        parseCoordinate(reader.getAttributeValue(null, "lon"), 180, waypointId)));
+                                waypointId = null;
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "waypoint".equals(reader.getLocalName()) && waypointId != null) {
+                    throw new RTZHandlingException("Waypoint " + waypointId + " of RTZ route has no position");
+                }
+            }
+            if (waypoints.size() < 2) {
+                throw new RTZHandlingException("RTZ route must have at least two waypoints, got " + waypoints.size());
+            }
+            return new RtzRoute(routeName, waypoints);
+        } catch (XMLStreamException e) {
+            throw new RTZHandlingException("Could not read RTZ route: " + e.getMessage());
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Waypoint> getWaypoints() {
+        return waypoints;
+    }
+
+    /**
+     * Number of legs, ie. one less than waypoints. Leg n goes from waypoint n-1 to waypoint n, counting from zero.
+     */
+    public int getLegCount() {
+        return waypoints.size() - 1;
+    }
+
+    private static int parseWaypointId(String id, int defaultId) {
+        if (id == null) {
+            return defaultId;
+        }
+        try {
+            return Integer.parseInt(id.trim());
+        } catch (NumberFormatException e) {
+            throw new RTZHandlingException("Invalid waypoint id in RTZ route: " + id);
+        }
+    }
+
+    private static double parseCoordinate(String value, double limit, int waypointId) {
+        double coordinate;
+        try {
+            coordinate = Double.parseDouble(String.valueOf(value));
+        } catch (NumberFormatException e) {
+            throw new RTZHandlingException("Invalid position of waypoint " + waypointId + " of RTZ route: " + value);
+        }
+        if (!(Math.abs(coordinate) <= limit)) {
+            throw new RTZHandlingException("Position of waypoint " + waypointId + " of RTZ route is out of range: " + value);
+        }
+        return coordinate;
+    }
+
+    private static XMLInputFactory newXmlInputFactory() {
+        var factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // Nothing more to read anyway
+            }
+        }
+    }
+
+    /**
+     * Single waypoint of route, in WGS84 degrees
+     */
+    public static final class Waypoint {
+        private final int id;
+        private final String name;
+        private final double lat;
+        private final double lon;
+
+        public Waypoint(int id, String name, double lat, double lon) {
+            this.id = id;
+            this.name = name;
+            this.lat = lat;
+            this.lon = lon;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getLat() {
+            return lat;
+        }
+
+        public double getLon() {
+            return lon;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader of S-124 DataSets, such as those of the Baltic nautical warning exchange.
+ * <p>
+ * Dataset is read with StAX, and each S124_NWPreamble and S124_NavigationalWarningPart is handed over as
+ * ForeignWarningEntity as soon as its element ends, so memory use depends on the size of single feature, not
+ * on the size of dataset. Text of single element is limited to the size of the largest column it is stored to.
+ * <p>
+ * Elements are matched by local name only, so datasets of different S-124 and GML versions are accepted, and
+ * unknown elements are skipped. Multi-part geometries are read only as far as their first part.
+ */
+public final class S124DatasetReader {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = newXmlInputFactory();
+
+    private static final String PREAMBLE = "S124_NWPreamble";
+    private static final String WARNING_PART = "S124_NavigationalWarningPart";
+
+    private static final int MAX_TEXT_LENGTH = 10485760;
+    private static final int MAX_LONG_TEXT_LENGTH = 4000;
+    private static final int MAX_SHORT_TEXT_LENGTH = 255;
+
+    private S124DatasetReader() {
+    }
+
+    /**
+     * Read features of given dataset one at a time. Stream is not closed.
+     *
+     * @param dataset  S-124 DataSet document
+     * @param consumer gets each feature, without source, as soon as it has been read
+     * @return number of features read
+     * @throws IntegrationException if dataset is not well formed
+     */
+    public static int read(InputStream dataset, Consumer<ForeignWarningEntity> consumer) {
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(dataset);
+            var count = 0;
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                if (PREAMBLE.equals(reader.getLocalName())) {
+                    consumer.accept(readFeature(reader, ForeignWarningEntity.FeatureType.PREAMBLE));
+                    count++;
+                } else if (WARNING_PART.equals(reader.getLocalName())) {
+                    consumer.accept(readFeature(reader, ForeignWarningEntity.FeatureType.WARNING_PART));
+                    count++;
+                }
+            }
+            return count;
+        } catch (XMLStreamException e) {
+            throw new IntegrationException("Could not read S-124 dataset: " + e.getMessage(), e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Read feature whose start element reader is at, until its end element
+     */
+    private static ForeignWarningEntity readFeature(XMLStreamReader reader, ForeignWarningEntity.FeatureType featureType) throws XMLStreamException {
+        var feature = new ForeignWarningEntity(featureType);
+        feature.setGmlId(truncate(attribute(reader, "id"), MAX_SHORT_TEXT_LENGTH));
+        var path = new ArrayList<String>();
+        path.add(reader.getLocalName());
+        var text = new StringBuilder();
+        String dateStart = null, timeStart = null, dateEnd = null, timeEnd = null;
+
+        while (!path.isEmpty()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    path.add(reader.getLocalName());
+                    text.setLength(0);
+                    readStartElement(reader, feature, path);
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    if (text.length() + reader.getTextLength() > MAX_TEXT_LENGTH) {
+                        throw new XMLStreamException("Element " + path.get(path.size() - 1) + " of feature " + feature.getGmlId() + " is too long");
+                    }
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    var value = text.toString().trim();
+                    text.setLength(0);
+                    if (!value.isEmpty() && path.size() > 1) {
+                        var name = path.get(path.size() - 1);
+                        var parent = path.get(path.size() - 2);
+                        switch (path.get(1)) {
+                            case "id":
+                                feature.setS124Id(truncate(value, MAX_SHORT_TEXT_LENGTH));
+                                break;
+                            case "messageSeriesIdentifier":
+                                readMessageSeriesIdentifier(feature, name, value);
+                                break;
+                            case "generalArea":
+                                feature.setGeneralArea(firstOf(feature.getGeneralArea(), truncate(value, MAX_SHORT_TEXT_LENGTH)));
+                                break;
+                            case "title":
+                                feature.setTitle(firstOf(feature.getTitle(), truncate(value, MAX_LONG_TEXT_LENGTH)));
+                                break;
+                            case "Subject":
+                            case "subject":
+                                feature.setSubject(firstOf(feature.getSubject(), truncate(value, MAX_LONG_TEXT_LENGTH)));
+                                break;
+                            case "sourceDate":
+                                feature.setSourceDate(truncate(value, 50));
+                                break;
+                            case "fixedDateRange":
+                                if ("timeOfDayStart".equals(name)) {
+                                    timeStart = value;
+                                } else if ("timeOfDayEnd".equals(name)) {
+                                    timeEnd = value;
+                                } else if ("dateStart".equals(parent) || "dateStart".equals(name)) {
+                                    dateStart = value;
+                                } else if ("dateEnd".equals(parent) || "dateEnd".equals(name)) {
+                                    dateEnd = value;
+                                }
+                                break;
+                            case "geometry":
+                                if ("pos".equals(name) || "posList".equals(name)) {
+                                    feature.setGmlPos(firstOf(feature.getGmlPos(), value));
+                                }
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+                    path.remove(path.size() - 1);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (feature.getS124Id() == null) {
+            feature.setS124Id(feature.getGmlId());
+        }
+        feature.setValidityStartTime(toUtcDateTime(dateStart, timeStart));
+        feature.setValidityEndTime(toUtcDateTime(dateEnd, timeEnd));
+        return feature;
+    }
+
+    private static void readStartElement(XMLStreamReader reader, ForeignWarningEntity feature, List<String> path) {
+        var name = path.get(path.size() - 1);
+        if ("header".equals(name) && path.size() == 2) {
+            var href = attribute(reader, "href");
+            if (href != null) {
+                feature.setWarningGmlId(truncate(href.startsWith("#") ? href.substring(1) : href, MAX_SHORT_TEXT_LENGTH));
+            }
+        } else if (path.size() > 2 && "geometry".equals(path.get(1)) && feature.getGeometryType() == null) {
+            switch (name) {
+                case "Point":
+                    feature.setGeometryType("Point");
+                    break;
+                case "Curve":
+                case "LineString":
+                    feature.setGeometryType("LineString");
+                    break;
+                case "Surface":
+                case "Polygon":
+                    feature.setGeometryType("Polygon");
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void readMessageSeriesIdentifier(ForeignWarningEntity feature, String name, String value) {
+        switch (name) {
+            case "NameOfSeries":
+            case "nameOfSeries":
+                feature.setNameOfSeries(truncate(value, MAX_SHORT_TEXT_LENGTH));
+                break;
+            case "typeOfWarning":
+                feature.setTypeOfWarning(truncate(value, 50));
+                break;
+            case "warningNumber":
+                feature.setWarningNumber(truncate(value, 50));
+                break;
+            case "year":
+                feature.setYear(truncate(value, 10));
+                break;
+            case "country":
+                feature.setCountry(truncate(value, 10));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Date and optional time of day of fixed date range as UTC, or null if date is missing or invalid
+     */
+    static LocalDateTime toUtcDateTime(String date, String timeOfDay) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            var localDate = LocalDate.parse(date);
+            if (timeOfDay == null) {
+                return localDate.atStartOfDay();
+            }
+            if (timeOfDay.endsWith("Z") || timeOfDay.contains("+") || timeOfDay.lastIndexOf('-') > 0) {
+                return OffsetTime.parse(timeOfDay).atDate(localDate).withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
+            }
+            return localDate.atTime(LocalTime.parse(timeOfDay));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Value of attribute with given local name, in any namespace
+     */
+    private static String attribute(XMLStreamReader reader, String localName) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (localName.equals(reader.getAttributeLocalName(i))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private static String firstOf(String current, String value) {
+        return current != null ? current : value;
+    }
+
+    private static String truncate(String value, int length) {
+        return value == null || value.length() <= length ? value : value.substring(0, length);
+    }
+
+    private static XMLInputFactory newXmlInputFactory() {
+        var factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // Nothing more to read anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stax.StAXSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Validates rendered S124 documents against S124 XML schema before they are delivered anywhere.
+ * Schema is compiled only once at startup from the bundled schema files. Compiled Schema is thread safe,
+ * but Validators created from it are not, so those are pooled and borrowed one per validation.
+ * Documents are fed to validator as StAX sources, so no DOM tree is built for them.
+ */
+@Component
+public class S124SchemaValidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(S124SchemaValidator.class);
+
+    @Value("${nautical-warnings.validation.enabled:false}")
+    private boolean validationEnabled;
+    @Value("${nautical-warnings.validation.schema:/nautical-warnings/schemas/S124.xsd}")
+    private String schemaLocation;
+    @Value("${nautical-warnings.validation.parallelism:4}")
+    private int parallelism;
+
+    private Schema schema;
+    private BlockingQueue<Validator> validatorPool;
+    private XMLInputFactory xmlInputFactory;
+    private ExecutorService executor;
+
+
+    @PostConstruct
+    public void init() {
+        if (!validationEnabled) {
+            logger.info("S124 schema validation is toggled off for Nautical Warnings.");
+            return;
+        }
+        var schemaUrl = S124SchemaValidator.class.getResource(schemaLocation);
+        if (schemaUrl == null) {
+            throw new IllegalStateException("S124 schema validation is enabled, but schema " + schemaLocation + " was not found");
+        }
+        try {
+            var schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            schemaFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            schemaFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            // Imported S100 and GML schemas are bundled next to S124 schema, they are never fetched from network
+            schemaFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "file,jar");
+            this.schema = schemaFactory.newSchema(schemaUrl);
+        } catch (SAXException e) {
+            throw new IllegalStateException("Could not compile S124 schema " + schemaLocation, e);
+        }
+
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        this.validatorPool = new ArrayBlockingQueue<>(parallelism);
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            var thread = new Thread(r, "s124-validator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("S124 schema validation is toggled on for Nautical Warnings, using schema {}", schemaUrl);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return validationEnabled;
+    }
+
+    /**
+     * Validate single S124 document
+     *
+     * @param s124Document
+     * @return validation error message, or empty if document is valid or validation is not enabled
+     */
+    public Optional<String> validate(String s124Document) {
+        if (!validationEnabled) {
+            return Optional.empty();
+        }
+        var validator = borrowValidator();
+        XMLStreamReader reader = null;
+        try {
+            reader = xmlInputFactory.createXMLStreamReader(new StringReader(s124Document));
+            validator.validate(new StAXSource(reader));
+            return Optional.empty();
+        } catch (SAXParseException e) {
+            return Optional.of(String.format("Line %d, column %d: %s", e.getLineNumber(), e.getColumnNumber(), e.getMessage()));
+        } catch (SAXException | XMLStreamException e) {
+            return Optional.of(e.getMessage());
+        } catch (IOException e) {
+            throw new IntegrationException("Could not validate S124 document", e);
+        } finally {
+            closeQuietly(reader);
+            returnValidator(validator);
+        }
+    }
+
+    /**
+     * Validate S124 documents of given warnings in parallel, and mark each warning either valid
+     * or quarantined with validation error. Warnings with validation error must not be delivered.
+     *
+     * @param warnings
+     * @return warnings that failed validation
+     */
+    public List<NauticalWarningEntity> validateAll(List<NauticalWarningEntity> warnings) {
+        if (!validationEnabled || warnings.isEmpty()) {
+            return List.of();
+        }
+        var tasks = new ArrayList<Callable<Optional<String>>>();
+        warnings.forEach(w -> tasks.add(() -> validate(w.getS124Document())));
+
+        var invalidWarnings = new ArrayList<NauticalWarningEntity>();
+        try {
+            List<Future<Optional<String>>> futures = executor.invokeAll(tasks);
+            for (int i = 0; i < warnings.size(); i++) {
+                var warning = warnings.get(i);
+                warning.setValidationError(futures.get(i).get().orElse(null));
+                if (warning.getValidationError() != null) {
+                    logger.warn("S124 document for warning id {} failed schema validation and is quarantined: {}",
+                            warning.getId(), warning.getValidationError());
+                    invalidWarnings.add(warning);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IntegrationException("Interrupted while validating S124 documents", e);
+        } catch (ExecutionException e) {
+            throw new IntegrationException("Could not validate S124 documents", e.getCause());
+        }
+        return invalidWarnings;
+    }
+
+    private Validator borrowValidator() {
+        var validator = validatorPool.poll();
+        return validator != null ? validator : schema.newValidator();
+    }
+
+    private void returnValidator(Validator validator) {
+        validator.reset();
+        validatorPool.offer(validator);
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            logger.debug("Could not close XML stream reader", e);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeDeserializer;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeSerializer;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Structured S124 template parameters extracted from original Digitraffic warning.
+ * These are stored along with the warning when it is created, so that later
+ * changes to the S124 document (for example expiry) can be rendered straight
+ * from these values instead of parsing and area matching the geojson again.
+ */
+@Embeddable
+public class S124WarningParameters {
+
+    @Column(name = "s124_id")
+    private String s124Id;
+
+    /**
+     * S124 type of warning, eg. 'local' or 'coastal'
+     */
+    @Column(name = "type_of_warning")
+    private String typeOfWarning;
+
+    @Column(name = "warning_number")
+    private String warningNumber;
+
+    /**
+     * Last two digits of the year the warning was created in
+     */
+    private String warningYear;
+
+    /**
+     * S124 general area name, as resolved by GeoLocationMatcher
+     */
+    @Column(name = "general_area")
+    private String generalArea;
+
+    private String geometryType;
+
+    /**
+     * Geometry coordinates already encoded to S124 gml:pos / gml:posList format
+     */
+    @Column(length = 10485760)
+    private String gmlPosCoordinates;
+
+    /**
+     * Geometry reduction statistics, not used in the template: number of positions and length of encoded
+     * coordinates, both as originally sent and as encoded after simplification and precision reduction
+     */
+    private Integer originalVertexCount;
+    private Integer vertexCount;
+    private Integer originalCoordinatesLength;
+    private Integer coordinatesLength;
+
+    /**
+     * Date part of Digitraffic creationTime, used as S124 sourceDate
+     */
+    private String sourceDate;
+
+    /**
+     * Date part of Digitraffic publishingTime
+     */
+    private String publishingDate;
+
+    /**
+     * Start of S124 fixedDateRange, in UTC
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    @Column(name = "validity_start_time")
+    private LocalDateTime validityStartTime;
+
+    /**
+     * End of validity given by the source, in UTC, or null if it is open ended. Included as the end
+     * of S124 fixedDateRange, and the warning is expired at this moment.
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    @Column(name = "validity_end_time")
+    private LocalDateTime validityEndTime;
+
+    /**
+     * XML escaped S124 title text
+     */
+    @Column(length = 10485760)
+    private String titleText;
+
+    /**
+     * XML escaped S124 subject text
+     */
+    @Column(length = 10485760)
+    private String subjectText;
+
+
+    public S124WarningParameters() {
+        // default constructor
+    }
+
+    public String getS124Id() {
+        return s124Id;
+    }
+
+    public void setS124Id(String s124Id) {
+        this.s124Id = s124Id;
+    }
+
+    public String getTypeOfWarning() {
+        return typeOfWarning;
+    }
+
+    public void setTypeOfWarning(String typeOfWarning) {
+        this.typeOfWarning = typeOfWarning;
+    }
+
+    public String getWarningNumber() {
+        return warningNumber;
+    }
+
+    public void setWarningNumber(String warningNumber) {
+        this.warningNumber = warningNumber;
+    }
+
+    public String getWarningYear() {
+        return warningYear;
+    }
+
+    public void setWarningYear(String warningYear) {
+        this.warningYear = warningYear;
+    }
+
+    public String getGeneralArea() {
+        return generalArea;
+    }
+
+    public void setGeneralArea(String generalArea) {
+        this.generalArea = generalArea;
+    }
+
+    public String getGeometryType() {
+        return geometryType;
+    }
+
+    public void setGeometryType(String geometryType) {
+        this.geometryType = geometryType;
+    }
+
+    public String getGmlPosCoordinates() {
+        return gmlPosCoordinates;
+    }
+
+    public void setGmlPosCoordinates(String gmlPosCoordinates) {
+        this.gmlPosCoordinates = gmlPosCoordinates;
+    }
+
+    public Integer getOriginalVertexCount() {
+        return originalVertexCount;
+    }
+
+    public void setOriginalVertexCount(Integer originalVertexCount) {
+        this.originalVertexCount = originalVertexCount;
+    }
+
+    public Integer getVertexCount() {
+        return vertexCount;
+    }
+
+    public void setVertexCount(Integer vertexCount) {
+        this.vertexCount = vertexCount;
+    }
+
+    public Integer getOriginalCoordinatesLength() {
+        return originalCoordinatesLength;
+    }
+
+    public void setOriginalCoordinatesLength(Integer originalCoordinatesLength) {
+        this.originalCoordinatesLength = originalCoordinatesLength;
+    }
+
+    public Integer getCoordinatesLength() {
+        return coordinatesLength;
+    }
+
+    public void setCoordinatesLength(Integer coordinatesLength) {
+        this.coordinatesLength = coordinatesLength;
+    }
+
+    public String getSourceDate() {
+        return sourceDate;
+    }
+
+    public void setSourceDate(String sourceDate) {
+        this.sourceDate = sourceDate;
+    }
+
+    public String getPublishingDate() {
+        return publishingDate;
+    }
+
+    public void setPublishingDate(String publishingDate) {
+        this.publishingDate = publishingDate;
+    }
+
+    public LocalDateTime getValidityStartTime() {
+        return validityStartTime;
+    }
+
+    public void setValidityStartTime(LocalDateTime validityStartTime) {
+        this.validityStartTime = validityStartTime;
+    }
+
+    public LocalDateTime getValidityEndTime() {
+        return validityEndTime;
+    }
+
+    public void setValidityEndTime(LocalDateTime validityEndTime) {
+        this.validityEndTime = validityEndTime;
+    }
+
+    public String getTitleText() {
+        return titleText;
+    }
+
+    public void setTitleText(String titleText) {
+        this.titleText = titleText;
+    }
+
+    public String getSubjectText() {
+        return subjectText;
+    }
+
+    public void setSubjectText(String subjectText) {
+        this.subjectText = subjectText;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        S124WarningParameters that = (S124WarningParameters) o;
+        return Objects.equals(s124Id, that.s124Id) &&
+                Objects.equals(typeOfWarning, that.typeOfWarning) &&
+                Objects.equals(warningNumber, that.warningNumber) &&
+                Objects.equals(warningYear, that.warningYear) &&
+                Objects.equals(generalArea, that.generalArea) &&
+                Objects.equals(geometryType, that.geometryType) &&
+                Objects.equals(gmlPosCoordinates, that.gmlPosCoordinates) &&
+                Objects.equals(originalVertexCount, that.originalVertexCount) &&
+                Objects.equals(vertexCount, that.vertexCount) &&
+                Objects.equals(originalCoordinatesLength, that.originalCoordinatesLength) &&
+                Objects.equals(coordinatesLength, that.coordinatesLength) &&
+                Objects.equals(sourceDate, that.sourceDate) &&
+                Objects.equals(publishingDate, that.publishingDate) &&
+                Objects.equals(validityStartTime, that.validityStartTime) &&
+                Objects.equals(validityEndTime, that.validityEndTime) &&
+                Objects.equals(titleText, that.titleText) &&
+                Objects.equals(subjectText, that.subjectText);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(s124Id, typeOfWarning, warningNumber, warningYear, generalArea, geometryType,
+                gmlPosCoordinates, originalVertexCount, vertexCount, originalCoordinatesLength, coordinatesLength, sourceDate, publishingDate, validityStartTime, validityEndTime, titleText, subjectText);
+    }
+
+    @Override
+    public String toString() {
+        return "S124WarningParameters{" +
+                "s124Id='" + s124Id + '\'' +
+                ", typeOfWarning='" + typeOfWarning + '\'' +
+                ", warningNumber='" + warningNumber + '\'' +
+                ", warningYear='" + warningYear + '\'' +
+                ", generalArea='" + generalArea + '\'' +
+                ", geometryType='" + geometryType + '\'' +
+                ", gmlPosCoordinates='" + gmlPosCoordinates + '\'' +
+                ", originalVertexCount=" + originalVertexCount +
+                ", vertexCount=" + vertexCount +
+                ", originalCoordinatesLength=" + originalCoordinatesLength +
+                ", coordinatesLength=" + coordinatesLength +
+                ", sourceDate='" + sourceDate + '\'' +
+                ", publishingDate='" + publishingDate + '\'' +
+                ", validityStartTime=" + validityStartTime +
+                ", validityEndTime=" + validityEndTime +
+                ", titleText='" + titleText + '\'' +
+                ", subjectText='" + subjectText + '\'' +
+                '}';
+    }
+}
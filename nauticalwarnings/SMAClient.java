@@ -1,34 +1,34 @@
 package fi.liikennevirasto.winvis.nauticalwarnings;
 
+import fi.liikennevirasto.winvis.common.SharedHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.RequestEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.RestClientResponseException;
 
 import javax.annotation.PostConstruct;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
 
 /**
  * This client contacts to SMA API to send an S124 XML message to it using REST POST API.
  * We handle basic authentication here, and any errors will cause IntegrationException, or
- * other runtime exceptions to be thrown
+ * other runtime exceptions to be thrown. This is the delivery sink named 'sma'.
  */
 @Service
-public class SMAClient {
+public class SMAClient implements DeliverySink {
+
+    public static final String NAME = "sma";
 
     private static final Logger logger = LoggerFactory.getLogger(SMAClient.class);
 
@@ -40,19 +40,16 @@ public class SMAClient {
     private String smaS124Username;
     @Value("${nautical-warnings.sma.password}")
     private String smaS124Password;
-    @Value("${request.timeoutSeconds.default:60}")
-    private int timeoutSecondsDefault;
+    @Value("${nautical-warnings.sma.gzip-requests:false}")
+    private boolean gzipRequests;
 
-    private RestTemplate restTemplate;
-    private HttpHeaders httpHeaders;
+    private final SharedHttpClient httpClient;
+    private Map<String, String> httpHeaders;
 
 
     @Autowired
-    public SMAClient(RestTemplateBuilder restTemplateBuilder) {
-        this.restTemplate = restTemplateBuilder
-                .setConnectTimeout(timeoutSecondsDefault * 1000)
-                .setReadTimeout(timeoutSecondsDefault * 1000)
-                .build();
+    public SMAClient(SharedHttpClient httpClient) {
+        this.httpClient = httpClient;
     }
 
 
@@ -61,14 +58,28 @@ public class SMAClient {
         if (this.smaIntegrationEnabled) {
             logger.info("SMA Integration is toggled on for Nautical Warnings. Notifications are sent to {}", smaS124Url);
         }
-        this.httpHeaders = new HttpHeaders() {{
-            String auth = smaS124Username + ":" + smaS124Password;
-            byte[] encodedAuth = Base64.getEncoder().encode(
-                    auth.getBytes(Charset.forName("UTF-8")));
-            String authHeader = "Basic " + new String(encodedAuth);
-            set("Authorization", authHeader);
-            set("Content-Type", "text/xml; charset=utf-8");
-        }};
+        String auth = smaS124Username + ":" + smaS124Password;
+        byte[] encodedAuth = Base64.getEncoder().encode(
+                auth.getBytes(Charset.forName("UTF-8")));
+        String authHeader = "Basic " + new String(encodedAuth);
+        this.httpHeaders = Map.of(
+                "Authorization", authHeader,
+                "Content-Type", "text/xml; charset=utf-8");
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return smaIntegrationEnabled;
+    }
+
+    @Override
+    public void deliver(List<NauticalWarningEntity> warnings) {
+        warnings.forEach(this::sendS124Notification);
     }
 
     /**
@@ -76,46 +87,58 @@ public class SMAClient {
      * Note: This is for XML S124 payloads
      * Note: We also include basic authentication
      * <p>
-     * Note: In case of error, we just log and continue, so all warnings get handled
+     * Note: Errors are logged and then thrown as IntegrationException, so that DeliveryDispatcher
+     * can retry the delivery later
+     * <p>
+     * Each attempt is recorded as DeliveryEvent for flight recorder
      *
      * @param warning NauticalWarningEntity containing converted S124 document
      */
 
     public void sendS124Notification(NauticalWarningEntity warning) {
-        warning.setSmaDeliveryTime(null);
         if (warning.getExpiredTime() == null) {
             logger.info("Sending new S124 message with warning id {} for SMA API", warning.getId());
         } else {
             logger.info("Sending expired S124 message with warning id {} for SMA API", warning.getId());
         }
 
-        var request = new RequestEntity<>(
-                warning.getS124Document(),
-                httpHeaders,
-                HttpMethod.POST,
-                URI.create(smaS124Url),
-                Void.class);
-
         DecimalFormat df = new DecimalFormat();
         df.setMaximumFractionDigits(2);
 
+        var document = warning.getS124Document().getBytes(StandardCharsets.UTF_8);
+        var event = new DeliveryEvent(NAME, warning.getId(),
+                warning.getExpiredTime() == null ? WarningStatus.ACTIVE : WarningStatus.EXPIRED);
+        event.documentLength = document.length;
+        event.begin();
         long beginTime = System.nanoTime();
         long endTime;
         try {
-            restTemplate.exchange(smaS124Url, HttpMethod.POST, request, Void.class);
-            warning.setSmaDeliveryTime(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime());
+            var response = httpClient.exchangePost(URI.create(smaS124Url), httpHeaders, document, gzipRequests);
+            event.httpStatus = response.getStatusCode();
+            event.bytesSent = response.getBytesSent();
+            event.bytesReceived = response.getBytesReceived();
+            event.succeeded = true;
         } catch (HttpClientErrorException | HttpServerErrorException e) {
+            event.httpStatus = e.getRawStatusCode();
+            event.bytesReceived = e.getResponseBodyAsByteArray().length;
             logger.error("Exception connecting SMA. StatusCode: {}, Statustext: {}, Errormessage: {}",
                     e.getStatusCode(), e.getStatusText(), e.getResponseBodyAsString());
             logger.error("Offending warning document:\n{} ", warning.getS124Document());
+            throw new IntegrationException("SMA rejected warning " + warning.getId() + " with status " + e.getStatusCode(), e);
         } catch (RestClientException e) {
+            if (e instanceof RestClientResponseException) {
+                event.httpStatus = ((RestClientResponseException) e).getRawStatusCode();
+            }
             logger.error("Unspecified exception connecting to SMA." +
                             " Errormessage: {}",
                     e.getMessage());
             logger.error("Offending warning document:\n{} ", warning.getS124Document());
+            throw new IntegrationException("Could not send warning " + warning.getId() + " to SMA", e);
+        } finally {
+            event.commit();
+            endTime = System.nanoTime();
+            logger.info("Call took {}ms", df.format((endTime - beginTime) / 1000000.0));
         }
-        endTime = System.nanoTime();
-        logger.info("Call took {}ms", df.format((endTime - beginTime) / 1000000.0));
     }
 
 
@@ -0,0 +1,78 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+
+/**
+ * Single S124 general area, with its geometry already parsed. Instances are immutable
+ * once constructed, and shared between threads as part of a SeaAreaDataset.
+ * <p>
+ * Besides full resolution geometry, each area has a simplified low resolution geometry for
+ * quick coarse matching, and a prepared full resolution geometry for fast predicates.
+ */
+public class SeaArea {
+
+    /**
+     * Tolerance used for simplified area geometries, in degrees. Roughly a kilometre,
+     * which drops most of the coastline detail while keeping area shapes recognizable.
+     */
+    static final double SIMPLIFICATION_TOLERANCE = 0.01;
+
+    private final String id;
+    private final String name;
+    private final Envelope bounds;
+    private final Geometry geometry;
+    private final Geometry simplifiedGeometry;
+    private final PreparedGeometry preparedGeometry;
+
+    public SeaArea(String id, String name, Envelope bounds, Geometry geometry) {
+        this.id = id;
+        this.name = name;
+        this.bounds = bounds;
+        this.geometry = geometry;
+        this.simplifiedGeometry = TopologyPreservingSimplifier.simplify(geometry, SIMPLIFICATION_TOLERANCE);
+        this.preparedGeometry = PreparedGeometryFactory.prepare(geometry);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * English S124 general area name, eg. 'Gulf of Finland'
+     */
+    public String getName() {
+        return name;
+    }
+
+    public Envelope getBounds() {
+        return bounds;
+    }
+
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    public Geometry getSimplifiedGeometry() {
+        return simplifiedGeometry;
+    }
+
+    /**
+     * Prepared full resolution geometry. JTS prepared geometries are safe to share between threads.
+     */
+    public PreparedGeometry getPreparedGeometry() {
+        return preparedGeometry;
+    }
+
+    @Override
+    public String toString() {
+        return "SeaArea{" +
+                "id='" + id + '\'' +
+                ", name='" + name + '\'' +
+                ", bounds=" + bounds +
+                '}';
+    }
+}
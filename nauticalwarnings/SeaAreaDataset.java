@@ -0,0 +1,58 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import java.util.List;
+
+/**
+ * Immutable set of sea areas that GeoLocationMatcher matches warnings against.
+ * A new dataset is built whenever area definitions are (re)loaded, and it replaces
+ * the previous one as a whole, so readers always see one consistent version.
+ */
+public class SeaAreaDataset {
+
+    private final long version;
+    private final long checksum;
+    private final String origin;
+    private final List<SeaArea> areas;
+
+    public SeaAreaDataset(long version, long checksum, String origin, List<SeaArea> areas) {
+        this.version = version;
+        this.checksum = checksum;
+        this.origin = origin;
+        this.areas = List.copyOf(areas);
+    }
+
+    /**
+     * Running number of the dataset, increased every time area definitions are reloaded
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * CRC32 checksum of the binary dataset contents
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Where this dataset was loaded from
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    public List<SeaArea> getAreas() {
+        return areas;
+    }
+
+    @Override
+    public String toString() {
+        return "SeaAreaDataset{" +
+                "version=" + version +
+                ", checksum=" + Long.toHexString(checksum) +
+                ", origin='" + origin + '\'' +
+                ", areas=" + areas.size() +
+                '}';
+    }
+}
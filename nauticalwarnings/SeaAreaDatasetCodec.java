@@ -0,0 +1,194 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+import org.wololo.geojson.FeatureCollection;
+import org.wololo.geojson.GeoJSONFactory;
+import org.wololo.jts2geojson.GeoJSONReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes sea area definitions in compact binary form, so they can be loaded without
+ * any JSON or GeoJSON parsing. Binary dataset is compiled from the sea area GeoJSON with main method
+ * of this class:
+ * <pre>
+ *     java SeaAreaDatasetCodec nw-sea-areas-converted.json nw-sea-areas.bin
+ * </pre>
+ * Format is big endian, and consists of
+ * <ul>
+ *     <li>magic 'NWSA' and format version (int)</li>
+ *     <li>number of areas (int)</li>
+ *     <li>for each area: id and name (int length + UTF-8 bytes), bounds as min x, min y, max x, max y (doubles),
+ *     and geometry as WKB (int length + bytes)</li>
+ *     <li>CRC32 checksum of all preceding bytes (long)</li>
+ * </ul>
+ */
+public class SeaAreaDatasetCodec {
+
+    private static final int MAGIC = 0x4E575341; // 'NWSA'
+    private static final int FORMAT_VERSION = 1;
+    private static final int CHECKSUM_LENGTH = Long.BYTES;
+
+    private SeaAreaDatasetCodec() { throw new IllegalStateException("Utility class"); }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: SeaAreaDatasetCodec <sea areas geojson> <binary dataset output>");
+            System.exit(1);
+        }
+        var geoJson = Files.readString(Paths.get(args[0]), StandardCharsets.UTF_8);
+        var areas = fromGeoJson(geoJson);
+        Files.write(Paths.get(args[1]), encode(areas));
+        System.out.printf("Compiled %d sea areas from %s to %s%n", areas.size(), args[0], args[1]);
+    }
+
+    /**
+     * Parse sea areas from GeoJSON FeatureCollection, where area name is in feature property 'ENG_UID'
+     *
+     * @param geoJson
+     * @return
+     */
+    public static List<SeaArea> fromGeoJson(String geoJson) {
+        var featureCollection = (FeatureCollection) GeoJSONFactory.create(geoJson);
+        var geoJSONReader = new GeoJSONReader();
+        var areas = new ArrayList<SeaArea>();
+        for (var feature : featureCollection.getFeatures()) {
+            var geometry = geoJSONReader.read(feature.getGeometry());
+            // GeoJSONFactory leaves feature id as a json node
+            var id = feature.getId() instanceof JsonNode ? ((JsonNode) feature.getId()).asText() : String.valueOf(feature.getId());
+            areas.add(new SeaArea(
+                    id,
+                    String.valueOf(feature.getProperties().get("ENG_UID")),
+                    geometry.getEnvelopeInternal(),
+                    geometry));
+        }
+        return areas;
+    }
+
+    public static byte[] encode(List<SeaArea> areas) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        var wkbWriter = new WKBWriter();
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(areas.size());
+        for (var area : areas) {
+            writeString(out, area.getId());
+            writeString(out, area.getName());
+            var bounds = area.getBounds();
+            out.writeDouble(bounds.getMinX());
+            out.writeDouble(bounds.getMinY());
+            out.writeDouble(bounds.getMaxX());
+            out.writeDouble(bounds.getMaxY());
+            var wkb = wkbWriter.write(area.getGeometry());
+            out.writeInt(wkb.length);
+            out.write(wkb);
+        }
+        out.flush();
+        var crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Memory map binary dataset file and decode it
+     *
+     * @param path
+     * @param version version number given to the loaded dataset
+     * @return
+     */
+    public static SeaAreaDataset read(Path path, long version) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer, version, path.toString());
+        }
+    }
+
+    /**
+     * Read only the stored checksum of binary dataset file, so unchanged files can be skipped without decoding them
+     *
+     * @param path
+     * @return
+     */
+    public static long readChecksum(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < CHECKSUM_LENGTH) {
+                throw new IOException("Sea area dataset " + path + " is truncated");
+            }
+            var buffer = ByteBuffer.allocate(CHECKSUM_LENGTH);
+            channel.read(buffer, channel.size() - CHECKSUM_LENGTH);
+            return buffer.flip().getLong();
+        }
+    }
+
+    public static SeaAreaDataset decode(ByteBuffer buffer, long version, String origin) throws IOException {
+        if (buffer.remaining() < 3 * Integer.BYTES + CHECKSUM_LENGTH) {
+            throw new IOException("Sea area dataset " + origin + " is truncated");
+        }
+        var contentLength = buffer.remaining() - CHECKSUM_LENGTH;
+        var storedChecksum = buffer.getLong(buffer.position() + contentLength);
+        var crc = new CRC32();
+        crc.update(buffer.duplicate().limit(buffer.position() + contentLength));
+        if (crc.getValue() != storedChecksum) {
+            throw new IOException("Sea area dataset " + origin + " checksum does not match its contents");
+        }
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a sea area dataset: " + origin);
+        }
+        var formatVersion = buffer.getInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported sea area dataset format version " + formatVersion + " in " + origin);
+        }
+        var count = buffer.getInt();
+        var wkbReader = new WKBReader();
+        var areas = new ArrayList<SeaArea>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                var id = readString(buffer);
+                var name = readString(buffer);
+                var minX = buffer.getDouble();
+                var minY = buffer.getDouble();
+                var maxX = buffer.getDouble();
+                var maxY = buffer.getDouble();
+                var bounds = new Envelope(minX, maxX, minY, maxY);
+                var wkb = new byte[buffer.getInt()];
+                buffer.get(wkb);
+                areas.add(new SeaArea(id, name, bounds, wkbReader.read(wkb)));
+            }
+        } catch (ParseException e) {
+            throw new IOException("Invalid area geometry in sea area dataset " + origin, e);
+        }
+        return new SeaAreaDataset(version, storedChecksum, origin, areas);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        var bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
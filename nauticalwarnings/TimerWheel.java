@@ -0,0 +1,135 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: timers are placed in slots of 64 ticks at the lowest level whose span reaches
+ * their due time, and moved down a level each time the wheel above turns, so scheduling and firing are O(1)
+ * regardless of how many timers there are. With four levels, one second ticks cover about 194 days, and
+ * timers further away wait in an overflow list that is sorted back in whenever the top level turns.
+ * <p>
+ * Time is given in milliseconds by the caller, so the wheel has no clock or thread of its own, and firing
+ * precision is one tick. Not thread safe, callers synchronize.
+ *
+ * @param <T> item fired when its timer is due
+ */
+class TimerWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final long originMillis;
+    private final List<List<Timer<T>>> slots = new ArrayList<>(LEVELS * SLOTS);
+    private List<Timer<T>> overflow = new ArrayList<>();
+    private List<T> due = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMillis  length of one tick, ie. firing precision
+     * @param startMillis current time
+     */
+    TimerWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.originMillis = startMillis;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Schedule given item to fire at given time. Items already due fire on next advance.
+     *
+     * @param dueMillis
+     * @param item
+     */
+    void schedule(long dueMillis, T item) {
+        // Rounded up, so that an item never fires before its time
+        var dueTick = dueMillis <= originMillis ? 0 : (dueMillis - originMillis + tickMillis - 1) / tickMillis;
+        place(new Timer<>(dueTick, item));
+        size++;
+    }
+
+    /**
+     * Advance wheel to given time
+     *
+     * @param nowMillis
+     * @return items that became due, in order of their due tick
+     */
+    List<T> advance(long nowMillis) {
+        var targetTick = nowMillis <= originMillis ? 0 : (nowMillis - originMillis) / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Upper levels first, so that timers they move down are fired or moved again on this tick
+            for (int level = LEVELS - 1; level >= 1; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(slot(level, (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+                }
+            }
+            if ((currentTick & ((1L << (SLOT_BITS * LEVELS)) - 1)) == 0) {
+                var waiting = overflow;
+                overflow = new ArrayList<>();
+                cascade(waiting);
+            }
+            var slot = slot(0, (int) currentTick & SLOT_MASK);
+            for (var timer : slot) {
+                due.add(timer.item);
+            }
+            slot.clear();
+        }
+        var fired = due;
+        due = new ArrayList<>();
+        size -= fired.size();
+        return fired;
+    }
+
+    /**
+     * Number of scheduled items that have not fired yet
+     */
+    int size() {
+        return size;
+    }
+
+    private void cascade(List<Timer<T>> timers) {
+        var moved = new ArrayList<>(timers);
+        timers.clear();
+        moved.forEach(this::place);
+    }
+
+    private void place(Timer<T> timer) {
+        if (timer.dueTick <= currentTick) {
+            due.add(timer.item);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            // Lowest level whose current turn of the wheel above still contains the due tick
+            var shift = SLOT_BITS * (level + 1);
+            if ((timer.dueTick >>> shift) == (currentTick >>> shift)) {
+                slot(level, (int) (timer.dueTick >>> (SLOT_BITS * level)) & SLOT_MASK).add(timer);
+                return;
+            }
+        }
+        overflow.add(timer);
+    }
+
+    private List<Timer<T>> slot(int level, int index) {
+        return slots.get(level * SLOTS + index);
+    }
+
+    private static final class Timer<T> {
+        private final long dueTick;
+        private final T item;
+
+        private Timer(long dueTick, T item) {
+            this.dueTick = dueTick;
+            this.item = item;
+        }
+    }
+}
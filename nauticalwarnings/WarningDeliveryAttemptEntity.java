@@ -0,0 +1,153 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeDeserializer;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeSerializer;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Single attempt to deliver a warning to a delivery sink, successful or not.
+ * Times are UTC.
+ */
+@Entity
+@Table(name = "nautical_warning_delivery_attempts", indexes = {
+        @Index(name = "idx_nautical_warning_delivery_attempts_warning", columnList = "warning_id"),
+        @Index(name = "idx_nautical_warning_delivery_attempts_start", columnList = "start_time")
+})
+public class WarningDeliveryAttemptEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(name = "delivery_id", nullable = false)
+    private long deliveryId;
+
+    @Column(name = "warning_id", nullable = false)
+    private long warningId;
+
+    @Column(length = 50, nullable = false)
+    private String sink;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10, nullable = false)
+    private WarningStatus warningStatus;
+
+    /**
+     * Number of this attempt for the delivery, starting from 1
+     */
+    private int attempt;
+
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    @Column(name = "start_time")
+    private LocalDateTime startTime;
+
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    private LocalDateTime endTime;
+
+    private boolean success;
+
+    @Column(length = 4000)
+    private String error;
+
+
+    public WarningDeliveryAttemptEntity() {
+        // default constructor
+    }
+
+    public WarningDeliveryAttemptEntity(WarningDeliveryEntity delivery, LocalDateTime startTime, LocalDateTime endTime, String error) {
+        this.deliveryId = delivery.getId();
+        this.warningId = delivery.getWarningId();
+        this.sink = delivery.getSink();
+        this.warningStatus = delivery.getWarningStatus();
+        this.attempt = delivery.getAttempts();
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.success = error == null;
+        this.error = error;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getDeliveryId() {
+        return deliveryId;
+    }
+
+    public long getWarningId() {
+        return warningId;
+    }
+
+    public String getSink() {
+        return sink;
+    }
+
+    public WarningStatus getWarningStatus() {
+        return warningStatus;
+    }
+
+    public int getAttempt() {
+        return attempt;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        WarningDeliveryAttemptEntity that = (WarningDeliveryAttemptEntity) o;
+        return id == that.id &&
+                deliveryId == that.deliveryId &&
+                warningId == that.warningId &&
+                attempt == that.attempt &&
+                success == that.success &&
+                Objects.equals(sink, that.sink) &&
+                warningStatus == that.warningStatus &&
+                Objects.equals(startTime, that.startTime) &&
+                Objects.equals(endTime, that.endTime) &&
+                Objects.equals(error, that.error);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, deliveryId, warningId, sink, warningStatus, attempt, startTime, endTime, success, error);
+    }
+
+    @Override
+    public String toString() {
+        return "WarningDeliveryAttemptEntity{" +
+                "id=" + id +
+                ", deliveryId=" + deliveryId +
+                ", warningId=" + warningId +
+                ", sink='" + sink + '\'' +
+                ", warningStatus=" + warningStatus +
+                ", attempt=" + attempt +
+                ", startTime=" + startTime +
+                ", endTime=" + endTime +
+                ", success=" + success +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,15 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface WarningDeliveryAttemptRepository extends JpaRepository<WarningDeliveryAttemptEntity, Long> {
+
+    List<WarningDeliveryAttemptEntity> findAllByWarningIdOrderByStartTimeAsc(long warningId);
+
+    @Modifying
+    void deleteByStartTimeBefore(LocalDateTime time);
+}
@@ -0,0 +1,202 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeDeserializer;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeSerializer;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Delivery status of one nautical warning to one delivery sink. Each warning is delivered
+ * twice to every sink: once when it is new and active, and once when it has expired.
+ */
+@Entity
+@Table(name = "nautical_warning_deliveries",
+        uniqueConstraints = @UniqueConstraint(name = "uq_nautical_warning_deliveries", columnNames = {"warning_id", "sink", "warning_status"}),
+        indexes = @Index(name = "idx_nautical_warning_deliveries_retry", columnList = "sink,status,next_attempt_time"))
+public class WarningDeliveryEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(name = "warning_id", nullable = false)
+    private long warningId;
+
+    /**
+     * Name of the DeliverySink
+     */
+    @Column(name = "sink", length = 50, nullable = false)
+    private String sink;
+
+    /**
+     * Whether this is delivery of the active or the expired warning
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "warning_status", length = 10, nullable = false)
+    private WarningStatus warningStatus;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 10, nullable = false)
+    private WarningDeliveryStatus status = WarningDeliveryStatus.PENDING;
+
+    private int attempts;
+
+    /**
+     * Error of the last failed attempt
+     */
+    @Column(length = 4000)
+    private String lastError;
+
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    @Column(updatable = false)
+    private LocalDateTime createdTime;
+
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    private LocalDateTime lastAttemptTime;
+
+    /**
+     * When the retry sweep may queue this delivery again, if it is not delivered by then
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    @Column(name = "next_attempt_time")
+    private LocalDateTime nextAttemptTime;
+
+    /**
+     * When the warning was delivered (UTC), or null if not yet delivered
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    private LocalDateTime deliveredTime;
+
+
+    public WarningDeliveryEntity() {
+        // default constructor
+    }
+
+    public WarningDeliveryEntity(long warningId, String sink, WarningStatus warningStatus, LocalDateTime nextAttemptTime) {
+        this.warningId = warningId;
+        this.sink = sink;
+        this.warningStatus = warningStatus;
+        this.nextAttemptTime = nextAttemptTime;
+    }
+
+    @PrePersist
+    public void prePersist() {
+        createdTime = LocalDateTime.now();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getWarningId() {
+        return warningId;
+    }
+
+    public String getSink() {
+        return sink;
+    }
+
+    public WarningStatus getWarningStatus() {
+        return warningStatus;
+    }
+
+    public WarningDeliveryStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(WarningDeliveryStatus status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreatedTime() {
+        return createdTime;
+    }
+
+    public LocalDateTime getLastAttemptTime() {
+        return lastAttemptTime;
+    }
+
+    public void setLastAttemptTime(LocalDateTime lastAttemptTime) {
+        this.lastAttemptTime = lastAttemptTime;
+    }
+
+    public LocalDateTime getNextAttemptTime() {
+        return nextAttemptTime;
+    }
+
+    public void setNextAttemptTime(LocalDateTime nextAttemptTime) {
+        this.nextAttemptTime = nextAttemptTime;
+    }
+
+    public LocalDateTime getDeliveredTime() {
+        return deliveredTime;
+    }
+
+    public void setDeliveredTime(LocalDateTime deliveredTime) {
+        this.deliveredTime = deliveredTime;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        WarningDeliveryEntity that = (WarningDeliveryEntity) o;
+        return id == that.id &&
+                warningId == that.warningId &&
+                attempts == that.attempts &&
+                Objects.equals(sink, that.sink) &&
+                warningStatus == that.warningStatus &&
+                status == that.status &&
+                Objects.equals(lastError, that.lastError) &&
+                Objects.equals(createdTime, that.createdTime) &&
+                Objects.equals(lastAttemptTime, that.lastAttemptTime) &&
+                Objects.equals(nextAttemptTime, that.nextAttemptTime) &&
+                Objects.equals(deliveredTime, that.deliveredTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, warningId, sink, warningStatus, status, attempts, lastError, createdTime, lastAttemptTime, nextAttemptTime, deliveredTime);
+    }
+
+    @Override
+    public String toString() {
+        return "WarningDeliveryEntity{" +
+                "id=" + id +
+                ", warningId=" + warningId +
+                ", sink='" + sink + '\'' +
+                ", warningStatus=" + warningStatus +
+                ", status=" + status +
+                ", attempts=" + attempts +
+                ", lastError='" + lastError + '\'' +
+                ", createdTime=" + createdTime +
+                ", lastAttemptTime=" + lastAttemptTime +
+                ", nextAttemptTime=" + nextAttemptTime +
+                ", deliveredTime=" + deliveredTime +
+                '}';
+    }
+}
@@ -0,0 +1,31 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface WarningDeliveryRepository extends JpaRepository<WarningDeliveryEntity, Long> {
+
+    List<WarningDeliveryEntity> findAllByWarningIdOrderByIdAsc(long warningId);
+
+    List<WarningDeliveryEntity> findAllBySinkAndWarningStatusAndWarningIdIn(String sink, WarningStatus warningStatus, Collection<Long> warningIds);
+
+    List<WarningDeliveryEntity> findAllBySinkAndStatusInAndNextAttemptTimeBefore(String sink, Collection<WarningDeliveryStatus> statuses, LocalDateTime time);
+
+    @Modifying
+    void deleteByCreatedTimeBefore(LocalDateTime time);
+
+    /**
+     * Mark deliveries of given warnings as active to given sink superseded, unless they have been delivered already
+     */
+    @Modifying
+    @Query("update WarningDeliveryEntity d set d.status = fi.liikennevirasto.winvis.nauticalwarnings.WarningDeliveryStatus.SUPERSEDED, " +
+            "d.nextAttemptTime = null where d.sink = ?1 and d.warningId in ?2 " +
+            "and d.warningStatus = fi.liikennevirasto.winvis.nauticalwarnings.WarningStatus.ACTIVE " +
+            "and d.status <> fi.liikennevirasto.winvis.nauticalwarnings.WarningDeliveryStatus.DELIVERED")
+    int supersedeActiveDeliveries(String sink, Collection<Long> warningIds);
+}
@@ -0,0 +1,25 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+/**
+ * Delivery state of a warning to a single delivery sink
+ * <p>
+ * NOTE: ENUM VALUES SHOULD BE MAXIMUM OF 10 CHARS LONG!
+ */
+public enum WarningDeliveryStatus {
+    /**
+     * Waiting in queue of the sink, or waiting to be queued
+     */
+    PENDING,
+    /**
+     * Delivered successfully
+     */
+    DELIVERED,
+    /**
+     * Last delivery attempt failed, will be retried
+     */
+    FAILED,
+    /**
+     * Active warning was expired before it was delivered, so only its expiry is delivered
+     */
+    SUPERSEDED
+}
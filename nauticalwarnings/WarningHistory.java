@@ -0,0 +1,280 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Append-only version history of rendered S124 documents, for finding out afterwards which warnings were
+ * in force at given moment, and what exactly was sent about them.
+ * <p>
+ * Versions are built during the poll from documents that were rendered anyway, and only inserted in the write
+ * transaction of the poll, so the history adds one compact insert per changed warning and nothing else.
+ * Each document is deflated with the previous version of the same warning as preset dictionary, so that
+ * unchanged parts of the document cost next to nothing. Every CHAIN_LENGTH versions a new chain is started
+ * without dictionary, so restoring any version needs only a few previous ones.
+ * <p>
+ * History is kept for nautical-warnings.history.retention-months after the warning expired, default two years.
+ * History starts from the first poll with this in place, so warnings that were already active then only have
+ * their expired version, with the active interval taken from their creation time.
+ */
+@Service
+public class WarningHistory {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarningHistory.class);
+
+    private static final int CHAIN_LENGTH = 8;
+
+    private final WarningVersionRepository versionRepository;
+
+    @Value("${nautical-warnings.history.retention-months:24}")
+    private int retentionMonths;
+
+    @Autowired
+    public WarningHistory(WarningVersionRepository versionRepository) {
+        this.versionRepository = versionRepository;
+    }
+
+    /**
+     * First versions of new warnings, not saved yet. A warning that is seen again after it has expired, eg. when
+     * its validity end was extended after it was expired at the old one, continues its earlier history.
+     * Warnings whose validity had not started when they were first seen get their version once they are
+     * activated, effective from their activation time, so they are not in force before their validity.
+     *
+     * @param warnings new active warnings, or warnings being activated now, with rendered documents
+     * @return
+     */
+    public List<WarningVersionEntity> newVersions(List<NauticalWarningEntity> warnings) {
+        if (warnings.isEmpty()) {
+            return List.of();
+        }
+        var latestVersions = findLatestVersions(warnings);
+        return warnings.stream()
+                .map(w -> {
+                    var latest = latestVersions.get(w.getId());
+                    var version = latest == null ? 1 : ((Number) latest[1]).intValue() + 1;
+                    var activeSince = w.getActivationTime() != null ? w.getActivationTime() : w.getFirstSeenTime();
+                    return newVersion(w, version, WarningStatus.ACTIVE, activeSince, activeSince, null);
+                })
+                .collect(toList());
+    }
+
+    /**
+     * Expired versions of given warnings, not saved yet. Previous version of each warning is looked up in one query.
+     *
+     * @param warnings          expired warnings with rendered documents
+     * @param previousDocuments document of each warning before expiry, by warning id
+     * @return
+     */
+    public List<WarningVersionEntity> expiredVersions(List<NauticalWarningEntity> warnings, Map<Long, String> previousDocuments) {
+        if (warnings.isEmpty()) {
+            return List.of();
+        }
+        var latestVersions = findLatestVersions(warnings);
+        var versions = new ArrayList<WarningVersionEntity>();
+        for (var warning : warnings) {
+            var latest = latestVersions.get(warning.getId());
+            if (warning.getActivationTime() != null) {
+                // Expired before its validity started, so it was never in force. Previous version, if any, is
+                // from an earlier time the warning was active, so its document is no dictionary for this one.
+                var version = latest == null ? 1 : ((Number) latest[1]).intValue() + 1;
+                versions.add(newVersion(warning, version, WarningStatus.EXPIRED, warning.getExpiredTime(), warning.getExpiredTime(), null));
+            } else if (latest == null) {
+                // Active before history was kept, so active interval is known only from creation time
+                versions.add(newVersion(warning, 1, WarningStatus.EXPIRED, warning.getExpiredTime(), activeSinceOfLegacyWarning(warning), null));
+            } else {
+                var latestVersion = ((Number) latest[1]).intValue();
+                versions.add(newVersion(warning, latestVersion + 1, WarningStatus.EXPIRED, warning.getExpiredTime(),
+                        (LocalDateTime) latest[2], previousDocuments.get(warning.getId())));
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Save versions built during poll, in the write transaction of the poll
+     *
+     * @param versions
+     */
+    public void save(List<WarningVersionEntity> versions) {
+        versionRepository.saveAll(versions);
+    }
+
+    /**
+     * Every version of given warning, oldest first
+     *
+     * @param warningId
+     * @return
+     */
+    public List<WarningVersion> getVersions(long warningId) {
+        return decompressAll(versionRepository.findAllByWarningIdOrderByVersionAsc(warningId));
+    }
+
+    /**
+     * Version of each warning that was in force at given moment
+     *
+     * @param time UTC
+     * @return
+     */
+    public List<WarningVersion> getInForceAt(LocalDateTime time) {
+        var warningIds = versionRepository.findInForceAt(time).stream()
+                .map(WarningVersionEntity::getWarningId)
+                .collect(toSet());
+        if (warningIds.isEmpty()) {
+            return List.of();
+        }
+        // Latest version that was already effective at the moment. Expired rows found by their active interval
+        // are replaced by the active version before them. Warnings that were active before history was kept
+        // have no such version, and are left out rather than returning their expiry as in force.
+        var versionsByWarning = decompressAll(versionRepository.findAllByWarningIdInOrderByWarningIdAscVersionAsc(warningIds)).stream()
+                .collect(groupingBy(WarningVersion::getWarningId));
+        var inForce = new ArrayList<WarningVersion>();
+        for (var versions : versionsByWarning.values()) {
+            versions.stream()
+                    .filter(v -> !v.getEffectiveTime().isAfter(time))
+                    .max(Comparator.comparingInt(WarningVersion::getVersion))
+                    .filter(v -> v.getStatus() == WarningStatus.ACTIVE)
+                    .ifPresent(inForce::add);
+        }
+        inForce.sort(Comparator.comparingLong(WarningVersion::getWarningId));
+        return inForce;
+    }
+
+    /**
+     * Clean up history of warnings that expired longer than retention period ago
+     */
+    @Transactional
+    public void deleteOldHistory() {
+        var before = LocalDateTime.now(ZoneOffset.UTC).minus(Period.ofMonths(retentionMonths));
+        var deleted = versionRepository.deleteHistoryExpiredBefore(before);
+        if (deleted > 0) {
+            logger.info("Deleted {} warning versions of warnings expired before {}", deleted, before);
+        }
+    }
+
+    /**
+     * Latest version row of each given warning that has history, by warning id
+     */
+    private Map<Long, Object[]> findLatestVersions(List<NauticalWarningEntity> warnings) {
+        var latestVersions = new HashMap<Long, Object[]>();
+        versionRepository.findLatestVersions(warnings.stream().map(NauticalWarningEntity::getId).collect(toSet()))
+                .forEach(row -> latestVersions.put(((Number) row[0]).longValue(), row));
+        return latestVersions;
+    }
+
+    private static WarningVersionEntity newVersion(NauticalWarningEntity warning, int version, WarningStatus status,
+                                                   LocalDateTime effectiveTime, LocalDateTime activeSince, String previousDocument) {
+        var entity = new WarningVersionEntity(warning.getId(), warning.getSource(), version, status, effectiveTime, activeSince);
+        var document = warning.getS124Document().getBytes(StandardCharsets.UTF_8);
+        var dictionary = previousDocument != null && (version - 1) % CHAIN_LENGTH != 0
+                ? previousDocument.getBytes(StandardCharsets.UTF_8)
+                : null;
+        entity.setDictionaryVersion(dictionary != null ? version - 1 : null);
+        entity.setDocumentLength(document.length);
+        entity.setDocument(compress(document, dictionary));
+        return entity;
+    }
+
+    private static LocalDateTime activeSinceOfLegacyWarning(NauticalWarningEntity warning) {
+        if (warning.getFirstSeenTime() != null) {
+            return warning.getFirstSeenTime();
+        }
+        if (warning.getCreatedTime() != null) {
+            return warning.getCreatedTime().atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime();
+        }
+        return warning.getExpiredTime();
+    }
+
+    /**
+     * Decompress versions, which must be ordered by warning and version, each warning starting from its first version
+     */
+    private static List<WarningVersion> decompressAll(List<WarningVersionEntity> versions) {
+        var result = new ArrayList<WarningVersion>(versions.size());
+        var documents = new HashMap<Long, byte[]>();
+        for (var version : versions) {
+            byte[] dictionary = null;
+            if (version.getDictionaryVersion() != null) {
+                dictionary = documents.get(version.getWarningId());
+                if (dictionary == null) {
+                    throw new IllegalStateException("Previous version of " + version + " is missing");
+                }
+            }
+            var document = decompress(version.getDocument(), dictionary, version.getDocumentLength());
+            documents.put(version.getWarningId(), document);
+            result.add(new WarningVersion(version, new String(document, StandardCharsets.UTF_8)));
+        }
+        return result;
+    }
+
+    static byte[] compress(byte[] document, byte[] dictionary) {
+        var deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(document);
+            deflater.finish();
+            var output = new ByteArrayOutputStream(Math.max(64, document.length / 4));
+            var buffer = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] decompress(byte[] compressed, byte[] dictionary, int length) {
+        var inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            // One extra byte, so that a document longer than expected is noticed
+            var document = new byte[length + 1];
+            var offset = 0;
+            while (!inflater.finished()) {
+                var inflated = inflater.inflate(document, offset, document.length - offset);
+                offset += inflated;
+                if (inflated == 0 && inflater.needsDictionary()) {
+                    if (dictionary == null) {
+                        throw new IllegalStateException("Warning version needs a dictionary, but has no previous version");
+                    }
+                    inflater.setDictionary(dictionary);
+                } else if (inflated == 0 && (inflater.needsInput() || offset == document.length)) {
+                    break;
+                }
+            }
+            if (!inflater.finished() || offset != length) {
+                throw new IllegalStateException("Warning version is truncated, or not " + length + " bytes long");
+            }
+            return Arrays.copyOf(document, length);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Could not decompress warning version", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Source of nautical warnings that NauticalWarningsService polls. Each source is polled on its own
+ * schedule and thread, and its warnings are compared only against earlier warnings of the same source.
+ * <p>
+ * Sources return their warnings as GeoJSON features in the shape of Digitraffic nautical warnings, so
+ * a source for some other feed format is responsible for mapping its warnings to that shape.
+ * <p>
+ * Warning ids of different sources may overlap, so every source has its own namespace number, and the
+ * stored warning id is the original id placed in that namespace, see {@link #toWarningId(long)}.
+ * Namespace 0 keeps original ids as they are, and belongs to the primary Digitraffic source.
+ */
+public interface WarningSource {
+
+    /**
+     * Size of each id namespace. Original warning ids must be smaller than this.
+     */
+    long NAMESPACE_SIZE = 1_000_000_000L;
+
+    /**
+     * Unique name of this source, stored with each of its warnings
+     */
+    String getName();
+
+    /**
+     * Id namespace number of this source, unique among sources
+     */
+    int getNamespace();
+
+    /**
+     * How long to wait after a poll completes before polling this source again
+     */
+    Duration getPollInterval();
+
+    /**
+     * Fetch all currently valid warnings of this source
+     *
+     * @return GeoJSON features in Digitraffic nautical warning format
+     */
+    List<JsonNode> fetchWarnings();
+
+    /**
+     * Place original warning id of this source into the namespace of this source
+     *
+     * @param featureId original warning id
+     * @return id of stored warning
+     */
+    default long toWarningId(long featureId) {
+        if (featureId < 0 || featureId >= NAMESPACE_SIZE) {
+            throw new IllegalArgumentException("Warning id " + featureId + " of source " + getName() + " does not fit in its id namespace");
+        }
+        return getNamespace() * NAMESPACE_SIZE + featureId;
+    }
+}
@@ -0,0 +1,120 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import fi.liikennevirasto.winvis.common.SharedHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * All sources of nautical warnings: WarningSource beans, such as the primary Digitraffic source,
+ * and GeoJSON feeds configured as nautical-warnings.sources.geojson list, for example:
+ * <pre>
+ * nautical-warnings.sources.geojson[0].name=digitraffic-test
+ * nautical-warnings.sources.geojson[0].namespace=1
+ * nautical-warnings.sources.geojson[0].url=https://...
+ * nautical-warnings.sources.geojson[0].poll-interval=5m
+ * </pre>
+ * Source names and namespaces must be unique, or startup fails.
+ */
+@Component
+@ConfigurationProperties(prefix = "nautical-warnings.sources")
+public class WarningSources {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarningSources.class);
+
+    private final List<WarningSource> sourceBeans;
+    private final SharedHttpClient httpClient;
+
+    private List<GeoJsonFeed> geojson = new ArrayList<>();
+    private List<WarningSource> sources = List.of();
+
+    @Autowired
+    public WarningSources(List<WarningSource> sourceBeans, SharedHttpClient httpClient) {
+        this.sourceBeans = sourceBeans;
+        this.httpClient = httpClient;
+    }
+
+    @PostConstruct
+    public void init() {
+        var allSources = new ArrayList<>(sourceBeans);
+        geojson.forEach(feed -> allSources.add(new GeoJsonWarningSource(feed.getName(), feed.getNamespace(),
+                URI.create(feed.getUrl()), feed.getPollInterval(), httpClient)));
+
+        var names = new HashSet<String>();
+        var namespaces = new HashSet<Integer>();
+        for (var source : allSources) {
+            if (!names.add(source.getName())) {
+                throw new IllegalStateException("Duplicate nautical warning source name " + source.getName());
+            }
+            if (source.getNamespace() < 0 || !namespaces.add(source.getNamespace())) {
+                throw new IllegalStateException("Invalid or duplicate id namespace " + source.getNamespace() + " for nautical warning source " + source.getName());
+            }
+            logger.info("Init: Nautical warning source {} with id namespace {}, polled every {}",
+                    source.getName(), source.getNamespace(), source.getPollInterval());
+        }
+        this.sources = List.copyOf(allSources);
+    }
+
+    public List<WarningSource> getSources() {
+        return sources;
+    }
+
+    public List<GeoJsonFeed> getGeojson() {
+        return geojson;
+    }
+
+    public void setGeojson(List<GeoJsonFeed> geojson) {
+        this.geojson = geojson;
+    }
+
+    /**
+     * Configuration of single GeoJSON feed
+     */
+    public static class GeoJsonFeed {
+        private String name;
+        private int namespace;
+        private String url;
+        private Duration pollInterval = Duration.ofMinutes(5);
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getNamespace() {
+            return namespace;
+        }
+
+        public void setNamespace(int namespace) {
+            this.namespace = namespace;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(Duration pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+    }
+}
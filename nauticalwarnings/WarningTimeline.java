@@ -0,0 +1,79 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeSerializer;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Propagation timeline of single warning: when it was published in its source, first seen by the poller,
+ * rendered, stored and expired, and every delivery attempt to every sink. Times are UTC.
+ * Latencies between stages are included, or null when either end of the stage is not known.
+ */
+public class WarningTimeline {
+
+    private final NauticalWarningEntity warning;
+    private final List<WarningDeliveryAttemptEntity> deliveryAttempts;
+
+    public WarningTimeline(NauticalWarningEntity warning, List<WarningDeliveryAttemptEntity> deliveryAttempts) {
+        this.warning = warning;
+        this.deliveryAttempts = deliveryAttempts;
+    }
+
+    public long getWarningId() {
+        return warning.getId();
+    }
+
+    public String getSource() {
+        return warning.getSource();
+    }
+
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    public LocalDateTime getPublishedTime() {
+        return warning.getPublishedTime();
+    }
+
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    public LocalDateTime getFirstSeenTime() {
+        return warning.getFirstSeenTime();
+    }
+
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    public LocalDateTime getRenderedTime() {
+        return warning.getRenderedTime();
+    }
+
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    public LocalDateTime getPersistedTime() {
+        return warning.getPersistedTime();
+    }
+
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    public LocalDateTime getExpiredTime() {
+        return warning.getExpiredTime();
+    }
+
+    public List<WarningDeliveryAttemptEntity> getDeliveryAttempts() {
+        return deliveryAttempts;
+    }
+
+    /**
+     * Published until first seen, ie. source lag plus polling interval
+     */
+    public Long getPollingLatencyMillis() {
+        return millisBetween(warning.getPublishedTime(), warning.getFirstSeenTime());
+    }
+
+    /**
+     * First seen until stored, ie. our own pipeline
+     */
+    public Long getPipelineLatencyMillis() {
+        return millisBetween(warning.getFirstSeenTime(), warning.getPersistedTime());
+    }
+
+    private static Long millisBetween(LocalDateTime start, LocalDateTime end) {
+        return start == null || end == null ? null : Duration.between(start, end).toMillis();
+    }
+}
@@ -0,0 +1,50 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+
+/**
+ * Single version of warning from its history, with its S124 document decompressed. Times are UTC.
+ */
+public class WarningVersion {
+
+    private final WarningVersionEntity version;
+    private final String s124Document;
+
+    public WarningVersion(WarningVersionEntity version, String s124Document) {
+        this.version = version;
+        this.s124Document = s124Document;
+    }
+
+    public long getWarningId() {
+        return version.getWarningId();
+    }
+
+    public String getSource() {
+        return version.getSource();
+    }
+
+    public int getVersion() {
+        return version.getVersion();
+    }
+
+    public WarningStatus getStatus() {
+        return version.getStatus();
+    }
+
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    public LocalDateTime getEffectiveTime() {
+        return version.getEffectiveTime();
+    }
+
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    public LocalDateTime getActiveSince() {
+        return version.getActiveSince();
+    }
+
+    public String getS124Document() {
+        return s124Document;
+    }
+}
@@ -0,0 +1,190 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeDeserializer;
+import fi.liikennevirasto.winvis.common.CustomLocalDateTimeSerializer;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Single rendered S124 revision of warning, in an append-only history. Rows are only ever inserted, and
+ * deleted once the history of the warning is older than retention period. See WarningHistory.
+ * <p>
+ * Document is stored deflate compressed. Unless it starts a new chain, the previous version of the same
+ * warning is used as preset dictionary, so the expired revision, which differs from the active one only by
+ * its validity end, takes only some tens of bytes.
+ */
+@Entity
+@Table(name = "nautical_warning_versions", uniqueConstraints = {
+        @UniqueConstraint(name = "uq_nautical_warning_versions_version", columnNames = {"warning_id", "version"})
+}, indexes = {
+        @Index(name = "idx_nautical_warning_versions_interval", columnList = "status,effective_time,active_since")
+})
+public class WarningVersionEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "warning_id", nullable = false)
+    private long warningId;
+
+    @Column(length = 50)
+    private String source;
+
+    /**
+     * Version number within the warning, starting from 1
+     */
+    @Column(nullable = false)
+    private int version;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 10, nullable = false)
+    private WarningStatus status;
+
+    /**
+     * When this version came into force (UTC): first seen time for active version, expiry time for expired one
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    @Column(name = "effective_time", nullable = false)
+    private LocalDateTime effectiveTime;
+
+    /**
+     * When the warning became active (UTC). Together with effectiveTime of expired version this is
+     * the whole interval the warning was in force, so interval queries need only single row.
+     */
+    @JsonSerialize(using = CustomLocalDateTimeSerializer.class)
+    @JsonDeserialize(using = CustomLocalDateTimeDeserializer.class)
+    @Column(name = "active_since")
+    private LocalDateTime activeSince;
+
+    /**
+     * Version whose document is the preset dictionary of this one, or null if compressed without dictionary
+     */
+    private Integer dictionaryVersion;
+
+    /**
+     * Length of uncompressed document in bytes
+     */
+    private int documentLength;
+
+    /**
+     * Deflate compressed UTF-8 S124 document
+     */
+    @JsonIgnore
+    @Column(length = 10485760)
+    private byte[] document;
+
+
+    public WarningVersionEntity() {
+        // default constructor
+    }
+
+    public WarningVersionEntity(long warningId, String source, int version, WarningStatus status,
+                                LocalDateTime effectiveTime, LocalDateTime activeSince) {
+        this.warningId = warningId;
+        this.source = source;
+        this.version = version;
+        this.status = status;
+        this.effectiveTime = effectiveTime;
+        this.activeSince = activeSince;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getWarningId() {
+        return warningId;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public WarningStatus getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getEffectiveTime() {
+        return effectiveTime;
+    }
+
+    public LocalDateTime getActiveSince() {
+        return activeSince;
+    }
+
+    public Integer getDictionaryVersion() {
+        return dictionaryVersion;
+    }
+
+    public void setDictionaryVersion(Integer dictionaryVersion) {
+        this.dictionaryVersion = dictionaryVersion;
+    }
+
+    public int getDocumentLength() {
+        return documentLength;
+    }
+
+    public void setDocumentLength(int documentLength) {
+        this.documentLength = documentLength;
+    }
+
+    public byte[] getDocument() {
+        return document;
+    }
+
+    public void setDocument(byte[] document) {
+        this.document = document;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        WarningVersionEntity that = (WarningVersionEntity) o;
+        return warningId == that.warningId &&
+                version == that.version &&
+                documentLength == that.documentLength &&
+                Objects.equals(id, that.id) &&
+                Objects.equals(source, that.source) &&
+                status == that.status &&
+                Objects.equals(effectiveTime, that.effectiveTime) &&
+                Objects.equals(activeSince, that.activeSince) &&
+                Objects.equals(dictionaryVersion, that.dictionaryVersion) &&
+                Arrays.equals(document, that.document);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hash(id, warningId, source, version, status, effectiveTime, activeSince, dictionaryVersion, documentLength);
+        result = 31 * result + Arrays.hashCode(document);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "WarningVersionEntity{" +
+                "id=" + id +
+                ", warningId=" + warningId +
+                ", source='" + source + '\'' +
+                ", version=" + version +
+                ", status=" + status +
+                ", effectiveTime=" + effectiveTime +
+                ", activeSince=" + activeSince +
+                ", dictionaryVersion=" + dictionaryVersion +
+                ", documentLength=" + documentLength +
+                ", compressedLength=" + (document == null ? 0 : document.length) +
+                '}';
+    }
+}
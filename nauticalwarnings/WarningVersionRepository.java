@@ -0,0 +1,43 @@
+package fi.liikennevirasto.winvis.nauticalwarnings;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface WarningVersionRepository extends JpaRepository<WarningVersionEntity, Long> {
+
+    List<WarningVersionEntity> findAllByWarningIdOrderByVersionAsc(long warningId);
+
+    List<WarningVersionEntity> findAllByWarningIdInOrderByWarningIdAscVersionAsc(Collection<Long> warningIds);
+
+    /**
+     * Warning id, version and active since time of the latest version of each given warning that has any
+     */
+    @Query("select v.warningId, v.version, v.activeSince from WarningVersionEntity v where v.warningId in ?1 " +
+            "and v.version = (select max(l.version) from WarningVersionEntity l where l.warningId = v.warningId)")
+    List<Object[]> findLatestVersions(Collection<Long> warningIds);
+
+    /**
+     * Warnings that were in force at given moment: expired warnings whose active interval contains the moment,
+     * and active versions of warnings that have not expired since
+     */
+    @Query("select v from WarningVersionEntity v where " +
+            "(v.status = fi.liikennevirasto.winvis.nauticalwarnings.WarningStatus.EXPIRED and v.activeSince <= ?1 and v.effectiveTime > ?1) " +
+            "or (v.status = fi.liikennevirasto.winvis.nauticalwarnings.WarningStatus.ACTIVE and v.effectiveTime <= ?1 and not exists " +
+            "(select e from WarningVersionEntity e where e.warningId = v.warningId and e.version > v.version))")
+    List<WarningVersionEntity> findInForceAt(LocalDateTime time);
+
+    /**
+     * Delete whole history of warnings that expired before given time. Warnings that have been active again
+     * since are kept, since their latest version is not that expiry.
+     */
+    @Modifying
+    @Query("delete from WarningVersionEntity v where v.warningId in (select e.warningId from WarningVersionEntity e " +
+            "where e.status = fi.liikennevirasto.winvis.nauticalwarnings.WarningStatus.EXPIRED and e.effectiveTime < ?1 " +
+            "and e.version = (select max(l.version) from WarningVersionEntity l where l.warningId = e.warningId))")
+    int deleteHistoryExpiredBefore(LocalDateTime time);
+}